@@ -0,0 +1,81 @@
+package no.mehl.jconfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates json config documents of roughly a given size for benchmarks.
+ */
+final class ConfigGenerator {
+
+    static final int KEYS_PER_CATEGORY = 1000;
+
+    private ConfigGenerator() {
+    }
+
+    static String json(long bytes) {
+        StringBuilder sb = new StringBuilder((int) bytes + 1024);
+        try {
+            write(sb, bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    static Path file(long bytes) throws IOException {
+        Path path = Files.createTempFile("benchmark-config", ".json");
+        path.toFile().deleteOnExit();
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            write(out, bytes);
+        }
+        return path;
+    }
+
+    static String categoryName(int category) {
+        return "category" + category;
+    }
+
+    static String keyName(int key) {
+        return "key" + key;
+    }
+
+    private static void write(Appendable out, long bytes) throws IOException {
+        long written = 1;
+        out.append('{');
+        for (int category = 0; written < bytes; category++) {
+            StringBuilder sb = new StringBuilder();
+            if (category > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(categoryName(category)).append("\":{");
+            for (int key = 0; key < KEYS_PER_CATEGORY; key++) {
+                if (key > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(keyName(key)).append("\":");
+                switch (key % 4) {
+                    case 0:
+                        sb.append('"').append("value-").append(category).append('-').append(key).append('"');
+                        break;
+                    case 1:
+                        sb.append(key);
+                        break;
+                    case 2:
+                        sb.append('[').append(key).append(',').append(key + 1).append(',').append(key + 2).append(']');
+                        break;
+                    default:
+                        sb.append("[\"a").append(key).append("\",\"b").append(key).append("\"]");
+                }
+            }
+            sb.append('}');
+            out.append(sb);
+            written += sb.length();
+        }
+        out.append('}');
+    }
+}
@@ -0,0 +1,83 @@
+package no.mehl.jconfig;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getter cost on a loaded config, by category and key, through the default category and through typed keys.
+ * See {@link ConfigManagerContendedBenchmark} for the same benchmarks under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConfigManagerBenchmark {
+
+    private ConfigManager manager;
+    private String category;
+    private String stringName;
+    private String intName;
+    private String intListName;
+    private String stringListName;
+    private ConfigKey.IntKey intKey;
+    private ConfigKey.ListKey<String> stringListKey;
+
+    @Setup
+    public void setup() {
+        manager = new ConfigManager.ConfigManagerBuilder()
+                .withJson(ConfigGenerator.json(256 * 1024))
+                .withDefaultCategory(ConfigGenerator.categoryName(0))
+                .build();
+        category = ConfigGenerator.categoryName(1);
+        stringName = ConfigGenerator.keyName(0);
+        intName = ConfigGenerator.keyName(1);
+        intListName = ConfigGenerator.keyName(2);
+        stringListName = ConfigGenerator.keyName(3);
+        intKey = manager.intKey(category, intName);
+        stringListKey = manager.stringListKey(category, stringListName);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public String getString() {
+        return manager.getString(category, stringName);
+    }
+
+    @Benchmark
+    public String getStringDefaultCategory() {
+        return manager.getString(stringName);
+    }
+
+    @Benchmark
+    public int getInt() {
+        return manager.getInt(category, intName);
+    }
+
+    @Benchmark
+    public List<String> getStringList() {
+        return manager.getStringList(category, stringListName);
+    }
+
+    @Benchmark
+    public List<Integer> getIntListDefaultCategory() {
+        return manager.getIntList(intListName);
+    }
+
+    @Benchmark
+    public int intKey() {
+        return intKey.getInt();
+    }
+
+    @Benchmark
+    public List<String> stringListKey() {
+        return stringListKey.get();
+    }
+}
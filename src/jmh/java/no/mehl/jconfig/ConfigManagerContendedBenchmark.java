@@ -0,0 +1,10 @@
+package no.mehl.jconfig;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * The getter benchmarks run from as many threads as there are cores.
+ */
+@Threads(Threads.MAX)
+public class ConfigManagerContendedBenchmark extends ConfigManagerBenchmark {
+}
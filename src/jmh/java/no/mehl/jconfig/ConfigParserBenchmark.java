@@ -0,0 +1,59 @@
+package no.mehl.jconfig;
+
+import com.google.gson.Gson;
+import no.mehl.jconfig.pojo.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of config documents of 1, 10 and 100 MB, from a string and from a file. Compares the streaming
+ * parser with the previous whole-document path (read all bytes, create a string, bind with a new Gson).
+ *
+ * Run with the gc profiler to see allocated bytes per parse: -PjmhArgs="ConfigParserBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConfigParserBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int megabytes;
+
+    private Path path;
+    private String json;
+    private ConfigParser parser;
+
+    @Setup
+    public void setup() throws IOException {
+        path = ConfigGenerator.file(megabytes * 1024L * 1024L);
+        json = new String(Files.readAllBytes(path));
+        parser = new ConfigParser();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public Config parseJson() {
+        return parser.parseJson(json);
+    }
+
+    @Benchmark
+    public Config parseFile() {
+        return parser.parseFile(path);
+    }
+
+    @Benchmark
+    public Config readAllBytesAndBind() throws IOException {
+        return new Gson().fromJson(new String(Files.readAllBytes(path)), Config.class);
+    }
+}
@@ -0,0 +1,56 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.metrics.ConfigMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reload of a large document where one category has changed and three categories are read afterwards,
+ * with eager and lazy parsing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LazyParsingBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int megabytes;
+
+    @Param({"false", "true"})
+    public boolean lazy;
+
+    private String[] documents;
+    private ConfigParser parser;
+    private ConfigManager manager;
+    private int reloads;
+    private String[] categories;
+    private String key;
+
+    @Setup
+    public void setup() {
+        String json = ConfigGenerator.json(megabytes * 1024L * 1024L);
+        String value = "\"value-0-0\"";
+        documents = new String[]{json, json.replace(value, "\"changed-0-0\"")};
+        parser = new ConfigParser(ConfigMetrics.NOOP, lazy);
+        manager = new ConfigManager.ConfigManagerBuilder().withConfig(parser.parseJson(json)).build();
+        categories = new String[]{ConfigGenerator.categoryName(0), ConfigGenerator.categoryName(1), ConfigGenerator.categoryName(2)};
+        key = ConfigGenerator.keyName(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public String reloadAndRead() {
+        manager.configChanged(parser.parseJson(documents[++reloads % 2]));
+        manager.getString(categories[1], key);
+        manager.getString(categories[2], key);
+        return manager.getString(categories[0], key);
+    }
+}
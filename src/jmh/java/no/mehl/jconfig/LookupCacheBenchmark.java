@@ -0,0 +1,64 @@
+package no.mehl.jconfig;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of hot keys by category and key from 32 threads, with and without the lookup cache, for every
+ * {@link ConfigStorage}. Hot keys are the first keys of a few categories, all of them fit in the cache. The cache
+ * is not used with hash map storage, both of its runs read without it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Threads(32)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LookupCacheBenchmark {
+
+    private static final int HOT_CATEGORIES = 8;
+    private static final int HOT_KEYS = 32;
+
+    @Param({"HASH_MAP", "COMPACT", "OFF_HEAP"})
+    public ConfigStorage storage;
+
+    @Param({"0", "1024"})
+    public int cacheSize;
+
+    private ConfigManager manager;
+    private String[] categories;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        ConfigManager.ConfigManagerBuilder builder = new ConfigManager.ConfigManagerBuilder()
+                .withStorage(storage)
+                .withJson(ConfigGenerator.json(256 * 1024));
+        if (cacheSize > 0) {
+            builder.withLookupCache(cacheSize);
+        }
+        manager = builder.build();
+        categories = new String[HOT_CATEGORIES];
+        for (int i = 0; i < HOT_CATEGORIES; i++) {
+            categories[i] = ConfigGenerator.categoryName(i);
+        }
+        keys = new String[HOT_KEYS];
+        for (int i = 0; i < HOT_KEYS; i++) {
+            keys[i] = ConfigGenerator.keyName(i * 4);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public String getString() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return manager.getString(categories[random.nextInt(HOT_CATEGORIES)], keys[random.nextInt(HOT_KEYS)]);
+    }
+}
@@ -0,0 +1,64 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end reload through {@link ConfigManager#configChanged(Config)}: compile, diff and notify N listeners.
+ * Alternates between two parsed configs which differ in one category.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReloadBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int listeners;
+
+    @Param({"manager", "diff"})
+    public String listenerType;
+
+    @Param({"65536", "1048576"})
+    public int configBytes;
+
+    private ConfigManager manager;
+    private Config first;
+    private Config second;
+    private boolean flip;
+
+    @Setup
+    public void setup() {
+        ConfigParser parser = new ConfigParser();
+        first = parser.parseJson(ConfigGenerator.json(configBytes));
+        second = parser.parseJson(ConfigGenerator.json(configBytes));
+        second.get(ConfigGenerator.categoryName(0)).put(ConfigGenerator.keyName(0), "changed");
+
+        manager = new ConfigManager.ConfigManagerBuilder().withConfig(first).build();
+        String key = ConfigGenerator.keyName(0);
+        for (int i = 0; i < listeners; i++) {
+            String category = ConfigGenerator.categoryName(i % 2);
+            if ("diff".equals(listenerType)) {
+                manager.addConfigDiffListener(category, diff -> diff.getNewSnapshot().getString(category, key));
+            } else {
+                manager.addConfigChangedListener(m -> m.getString(category, key));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public ConfigSnapshot reload() {
+        flip = !flip;
+        manager.configChanged(flip ? second : first);
+        return manager.snapshot();
+    }
+}
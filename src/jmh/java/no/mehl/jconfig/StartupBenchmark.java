@@ -0,0 +1,69 @@
+package no.mehl.jconfig;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from building a manager until the first value has been read, for a json file and for the same
+ * config converted to the binary format. Each invocation is a cold start of a new manager.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class StartupBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int megabytes;
+
+    private Path json;
+    private Path binary;
+    private String category;
+    private String key;
+
+    @Setup
+    public void setup() throws IOException {
+        json = ConfigGenerator.file(megabytes * 1024L * 1024L);
+        binary = Files.createTempFile("config", ".bin");
+        ConfigParser parser = new ConfigParser();
+        parser.writeBinary(parser.parseFile(json), binary);
+        category = ConfigGenerator.categoryName(0);
+        key = ConfigGenerator.keyName(0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(json);
+        Files.deleteIfExists(binary);
+    }
+
+    @Benchmark
+    public String json() {
+        ConfigManager manager = new ConfigManager.ConfigManagerBuilder()
+                .withConfig(new ConfigParser().parseFile(json))
+                .build();
+        try {
+            return manager.getString(category, key);
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Benchmark
+    public String binary() {
+        ConfigManager manager = new ConfigManager.ConfigManagerBuilder()
+                .withBinaryFile(binary.toString())
+                .build();
+        try {
+            return manager.getString(category, key);
+        } finally {
+            manager.close();
+        }
+    }
+}
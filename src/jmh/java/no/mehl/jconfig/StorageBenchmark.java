@@ -0,0 +1,52 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compile time and read latency of a large category for every {@link ConfigStorage}. Compiling is the
+ * cost of a reload, run with the gc profiler to compare allocation: -PjmhArgs="StorageBenchmark -prof gc".
+ * Retained memory is printed by {@link StorageFootprint}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StorageBenchmark {
+
+    @Param({"HASH_MAP", "COMPACT", "OFF_HEAP"})
+    public ConfigStorage storage;
+
+    @Param({"100000"})
+    public int entries;
+
+    private Config config;
+    private ConfigSnapshot snapshot;
+    private String[] routes;
+
+    @Setup
+    public void setup() {
+        config = StorageFootprint.table(entries);
+        snapshot = ConfigSnapshot.compile(config, "routes", ConfigSnapshot.EMPTY, storage);
+        routes = new String[entries / 3];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = "route." + i * 3;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConfigSnapshot compile() {
+        return ConfigSnapshot.compile(config, "routes", ConfigSnapshot.EMPTY, storage);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double getDouble() {
+        return snapshot.getDouble(routes[ThreadLocalRandom.current().nextInt(routes.length)]);
+    }
+}
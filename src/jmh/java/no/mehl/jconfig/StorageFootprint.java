@@ -0,0 +1,76 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Prints the heap and direct memory retained by a compiled snapshot of one large category, for every
+ * {@link ConfigStorage}. Run with gradle footprint, optionally -PfootprintEntries=1000000.
+ */
+public final class StorageFootprint {
+
+    private StorageFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Config config = table(entries);
+        System.out.println(String.format("%-10s %12s %12s %10s", "storage", "heap bytes", "direct bytes", "bytes/key"));
+        for (ConfigStorage storage : ConfigStorage.values()) {
+            long heap = usedHeap();
+            long direct = usedDirect();
+            ConfigSnapshot snapshot = ConfigSnapshot.compile(config, "routes", ConfigSnapshot.EMPTY, storage);
+            long retainedHeap = usedHeap() - heap;
+            long retainedDirect = usedDirect() - direct;
+            System.out.println(String.format("%-10s %12d %12d %10d", storage, retainedHeap, retainedDirect,
+                    (retainedHeap + retainedDirect) / entries));
+            if (snapshot.getVersion() < 0) {
+                System.out.println(snapshot);
+            }
+        }
+    }
+
+    /**
+     * A routing table like category, with numbers, booleans and strings from a small set of values.
+     */
+    static Config table(int entries) {
+        Category category = new Category();
+        for (int i = 0; i < entries; i++) {
+            String key = "route." + i;
+            switch (i % 3) {
+                case 0:
+                    category.put(key, (double) i);
+                    break;
+                case 1:
+                    category.put(key, new String("backend-" + (i % 16)));
+                    break;
+                default:
+                    category.put(key, i % 2 == 0);
+            }
+        }
+        Config config = new Config();
+        config.put("routes", category);
+        return config;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,321 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a {@link Config}, for loading large configs at startup without parsing json.
+ * All strings are stored once in a string table and referenced by index, and each category is stored
+ * as a separate block so it can be decoded on its own. Layout, all integers big endian:
+ *
+ * <pre>
+ * int magic "JCFG", int format version
+ * int string count, int[string count] string offsets
+ * int category count, (int name index, int offset, int length)[category count]
+ * strings: int byte length, UTF-8 bytes
+ * categories: int entry count, (int key index, value)[entry count]
+ * value: byte type, then a string index, a double, an element count followed by values,
+ *        or an entry count followed by (int key index, value) entries
+ * </pre>
+ */
+final class BinaryConfig {
+
+    private static final int MAGIC = 0x4A434647;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte NUMBER = 2;
+    private static final byte TRUE = 3;
+    private static final byte FALSE = 4;
+    private static final byte LIST = 5;
+    private static final byte MAP = 6;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final String[] strings;
+
+    private BinaryConfig(Path path, ByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new ConfigException(String.format("Not a binary config for path=%s", path));
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new ConfigException(String.format("Unsupported binary config version=%d for path=%s", buffer.getInt(4), path));
+        }
+        this.stringCount = count(8);
+        this.strings = new String[stringCount];
+    }
+
+    /**
+     * Memory maps a binary config. Categories are decoded on first access, the file is not read up front.
+     */
+    static Map<String, Map<String, ConfigValue>> map(Path path) {
+        BinaryConfig binary = new BinaryConfig(path, mapFile(path));
+        try {
+            Map<String, Map<String, ConfigValue>> categories = new HashMap<>();
+            int index = binary.categoryIndex();
+            int count = binary.count(index);
+            for (int i = 0; i < count; i++) {
+                int entry = index + 4 + i * 12;
+                int offset = binary.buffer.getInt(entry + 4);
+                categories.put(binary.string(binary.buffer.getInt(entry)), new LazyCategory(() -> binary.compileCategory(offset)));
+            }
+            return categories;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw binary.corrupt(e);
+        }
+    }
+
+    /**
+     * Reads a whole binary config.
+     */
+    static Config read(Path path) {
+        BinaryConfig binary = new BinaryConfig(path, mapFile(path));
+        try {
+            Config config = new Config();
+            int index = binary.categoryIndex();
+            int count = binary.count(index);
+            for (int i = 0; i < count; i++) {
+                int entry = index + 4 + i * 12;
+                Category category = new Category();
+                binary.decodeCategory(binary.buffer.getInt(entry + 4), category);
+                config.put(binary.string(binary.buffer.getInt(entry)), category);
+            }
+            return config;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw binary.corrupt(e);
+        }
+    }
+
+    private static ByteBuffer mapFile(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new ConfigException(String.format("Unable to read binary config for path=%s", path), e);
+        }
+    }
+
+    private int categoryIndex() {
+        return 12 + stringCount * 4;
+    }
+
+    /**
+     * Reads a count or length, which can not be larger than the file.
+     */
+    private int count(int position) {
+        int count = buffer.getInt(position);
+        if (count < 0 || count > buffer.limit()) {
+            throw new ConfigException(String.format("Invalid count=%d at offset=%d in binary config for path=%s", count, position, path));
+        }
+        return count;
+    }
+
+    /**
+     * Reads outside the buffer or a string table index out of range mean the file was truncated or corrupted.
+     */
+    private ConfigException corrupt(RuntimeException e) {
+        return new ConfigException(String.format("Binary config for path=%s is truncated or corrupt", path), e);
+    }
+
+    private String string(int index) {
+        String s = strings[index];
+        if (s == null) {
+            int offset = buffer.getInt(12 + index * 4);
+            byte[] bytes = new byte[count(offset)];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(offset + 4);
+            slice.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    private Map<String, ConfigValue> compileCategory(int offset) {
+        Map<String, Object> raw = new HashMap<>();
+        try {
+            decodeCategory(offset, raw);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw corrupt(e);
+        }
+        Map<String, ConfigValue> values = new HashMap<>(raw.size() * 2);
+        for (Map.Entry<String, Object> value : raw.entrySet()) {
+            values.put(value.getKey(), ConfigValue.of(value.getValue()));
+        }
+        return values;
+    }
+
+    private void decodeCategory(int offset, Map<String, Object> category) {
+        int[] position = {offset + 4};
+        int count = count(offset);
+        for (int i = 0; i < count; i++) {
+            String key = string(buffer.getInt(position[0]));
+            position[0] += 4;
+            category.put(key, decodeValue(position));
+        }
+    }
+
+    private Object decodeValue(int[] position) {
+        byte type = buffer.get(position[0]++);
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                position[0] += 4;
+                return string(buffer.getInt(position[0] - 4));
+            case NUMBER:
+                position[0] += 8;
+                return buffer.getDouble(position[0] - 8);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case LIST: {
+                int count = count(position[0]);
+                position[0] += 4;
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(decodeValue(position));
+                }
+                return list;
+            }
+            case MAP: {
+                int count = count(position[0]);
+                position[0] += 4;
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String key = string(buffer.getInt(position[0]));
+                    position[0] += 4;
+                    map.put(key, decodeValue(position));
+                }
+                return map;
+            }
+            default:
+                throw new ConfigException(String.format("Invalid value type=%d at offset=%d in binary config for path=%s", type, position[0] - 1, path));
+        }
+    }
+
+    /**
+     * Writes a config in binary form. Null categories are left out, like they are when compiling.
+     */
+    static void write(Config config, OutputStream out) throws IOException {
+        Map<String, Integer> stringIndex = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        List<byte[]> blocks = new ArrayList<>();
+        for (Map.Entry<String, Category> category : config.entrySet()) {
+            if (category.getValue() == null) {
+                continue;
+            }
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(block);
+            data.writeInt(category.getValue().size());
+            for (Map.Entry<String, Object> value : category.getValue().entrySet()) {
+                data.writeInt(index(stringIndex, value.getKey()));
+                encodeValue(data, value.getValue(), stringIndex);
+            }
+            data.flush();
+            names.add(category.getKey());
+            index(stringIndex, category.getKey());
+            blocks.add(block.toByteArray());
+        }
+
+        List<byte[]> encodedStrings = new ArrayList<>(stringIndex.size());
+        for (String s : stringIndex.keySet()) {
+            encodedStrings.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        int offset = 12 + encodedStrings.size() * 4 + 4 + blocks.size() * 12;
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(encodedStrings.size());
+        for (byte[] s : encodedStrings) {
+            data.writeInt(offset);
+            offset += 4 + s.length;
+        }
+        data.writeInt(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            data.writeInt(stringIndex.get(names.get(i)));
+            data.writeInt(offset);
+            data.writeInt(blocks.get(i).length);
+            offset += blocks.get(i).length;
+        }
+        for (byte[] s : encodedStrings) {
+            data.writeInt(s.length);
+            data.write(s);
+        }
+        for (byte[] block : blocks) {
+            data.write(block);
+        }
+        data.flush();
+    }
+
+    static void write(Config config, Path path) {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(config, out);
+        } catch (IOException e) {
+            throw new ConfigException(String.format("Unable to write binary config for path=%s", path), e);
+        }
+    }
+
+    private static void encodeValue(DataOutputStream data, Object value, Map<String, Integer> stringIndex) throws IOException {
+        if (value == null) {
+            data.writeByte(NULL);
+        } else if (value instanceof String) {
+            data.writeByte(STRING);
+            data.writeInt(index(stringIndex, (String) value));
+        } else if (value instanceof Number) {
+            data.writeByte(NUMBER);
+            data.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            data.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            data.writeByte(LIST);
+            data.writeInt(list.size());
+            for (Object o : list) {
+                encodeValue(data, o, stringIndex);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            data.writeByte(MAP);
+            data.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                data.writeInt(index(stringIndex, String.valueOf(entry.getKey())));
+                encodeValue(data, entry.getValue(), stringIndex);
+            }
+        } else {
+            throw new IOException(String.format("Unable to write value=%s of type %s", value, value.getClass()));
+        }
+    }
+
+    private static int index(Map<String, Integer> stringIndex, String s) {
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = stringIndex.size();
+            stringIndex.put(s, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,244 @@
+package no.mehl.jconfig;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * How to create an object of a bound type from a category, see {@link ConfigBinding}. The properties of a
+ * type, their keys and how each value is converted are found once per class and reused by every binding.
+ */
+final class BindingPlan<T> {
+
+    private static final ClassValue<BindingPlan<?>> plans = new ClassValue<BindingPlan<?>>() {
+        @Override
+        protected BindingPlan<?> computeValue(Class<?> type) {
+            return new BindingPlan<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final String[] keys;
+    private final List<Function<ConfigValue, Object>> converters;
+    private final boolean[] primitives;
+
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final Method[] methods;
+    /** Method instances the proxy class dispatches with, found on the first call of each method */
+    private final Method[] dispatched;
+    private final Constructor<?> proxyConstructor;
+
+    @SuppressWarnings("unchecked")
+    static <T> BindingPlan<T> of(Class<T> type) {
+        return (BindingPlan<T>) plans.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BindingPlan(Class<T> type) {
+        this.type = type;
+        List<String> keyList = new ArrayList<>();
+        List<Function<ConfigValue, Object>> converterList = new ArrayList<>();
+        List<Class<?>> classes = new ArrayList<>();
+        if (type.isInterface()) {
+            this.constructor = null;
+            this.fields = null;
+            List<Method> methodList = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                if (method.isDefault() || method.getParameterCount() > 0 || method.getReturnType() == void.class) {
+                    throw new IllegalArgumentException(String.format("Unable to bind method %s of %s, only methods without parameters can be bound", method.getName(), type.getName()));
+                }
+                methodList.add(method);
+                keyList.add(key(method.getAnnotation(ConfigBinding.Key.class), propertyName(method.getName())));
+                converterList.add(converter(type, method.getName(), method.getReturnType(), method.getGenericReturnType()));
+                classes.add(method.getReturnType());
+            }
+            this.methods = methodList.toArray(new Method[0]);
+            this.dispatched = new Method[methods.length];
+            try {
+                this.proxyConstructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException | RuntimeException e) {
+                throw new IllegalArgumentException(String.format("Unable to bind %s, no proxy can implement it", type.getName()), e);
+            }
+        } else {
+            this.methods = null;
+            this.dispatched = null;
+            this.proxyConstructor = null;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException | RuntimeException e) {
+                throw new IllegalArgumentException(String.format("Unable to bind %s, it needs a constructor without parameters", type.getName()), e);
+            }
+            List<Field> fieldList = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fieldList.add(field);
+                    keyList.add(key(field.getAnnotation(ConfigBinding.Key.class), field.getName()));
+                    converterList.add(converter(type, field.getName(), field.getType(), field.getGenericType()));
+                    classes.add(field.getType());
+                }
+            }
+            this.fields = fieldList.toArray(new Field[0]);
+        }
+        this.keys = keyList.toArray(new String[0]);
+        this.converters = converterList;
+        this.primitives = new boolean[classes.size()];
+        for (int i = 0; i < primitives.length; i++) {
+            primitives[i] = classes.get(i).isPrimitive();
+        }
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Creates an object with the values of the category. Keys missing from the category keep the value the
+     * constructor set for fields, and are null for methods of an interface.
+     */
+    T materialize(Map<String, ConfigValue> category) {
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ConfigValue value = category.get(keys[i]);
+            if (value == null || value.raw() == null) {
+                if (primitives[i] && methods != null) {
+                    throw new ConfigException(String.format("Missing value for key=%s of %s", keys[i], type.getName()));
+                }
+                continue;
+            }
+            try {
+                values[i] = converters.get(i).apply(value);
+            } catch (ConfigException e) {
+                throw new ConfigException(String.format("Unable to bind key=%s of %s", keys[i], type.getName()), e);
+            }
+        }
+        return methods != null ? proxy(values) : instance(values);
+    }
+
+    private T instance(Object[] values) {
+        try {
+            T instance = constructor.newInstance();
+            for (int i = 0; i < fields.length; i++) {
+                if (values[i] != null) {
+                    fields[i].set(instance, values[i]);
+                }
+            }
+            return instance;
+        } catch (ReflectiveOperationException e) {
+            throw new ConfigException(String.format("Unable to create %s", type.getName()), e);
+        }
+    }
+
+    /**
+     * Implements the interface with a proxy. Calls are matched to their value by the identity of the method
+     * the proxy class dispatches with, which is the same instance for every call of the method.
+     */
+    private T proxy(Object[] values) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            for (int i = 0; i < dispatched.length; i++) {
+                if (dispatched[i] == method) {
+                    return values[i];
+                }
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return describe(values);
+                }
+            }
+            int index = Arrays.asList(methods).indexOf(method);
+            dispatched[index] = method;
+            return values[index];
+        };
+        try {
+            return type.cast(proxyConstructor.newInstance(handler));
+        } catch (ReflectiveOperationException e) {
+            throw new ConfigException(String.format("Unable to create %s", type.getName()), e);
+        }
+    }
+
+    private String describe(Object[] values) {
+        StringBuilder builder = new StringBuilder(type.getSimpleName()).append('{');
+        for (int i = 0; i < keys.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(keys[i]).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String key(ConfigBinding.Key annotation, String name) {
+        return annotation != null ? annotation.value() : name;
+    }
+
+    /**
+     * Key of a method, the method name without a get or is prefix.
+     */
+    private static String propertyName(String method) {
+        int prefix = method.startsWith("get") ? 3 : method.startsWith("is") ? 2 : 0;
+        if (prefix == 0 || method.length() == prefix || !Character.isUpperCase(method.charAt(prefix))) {
+            return method;
+        }
+        return Character.toLowerCase(method.charAt(prefix)) + method.substring(prefix + 1);
+    }
+
+    private static Function<ConfigValue, Object> converter(Class<?> owner, String name, Class<?> c, Type generic) {
+        if (c == String.class) {
+            return ConfigValue::getString;
+        }
+        if (c == int.class || c == Integer.class) {
+            return ConfigValue::getInt;
+        }
+        if (c == long.class || c == Long.class) {
+            return ConfigValue::getLong;
+        }
+        if (c == double.class || c == Double.class) {
+            return ConfigValue::getDouble;
+        }
+        if (c == boolean.class || c == Boolean.class) {
+            return value -> {
+                if (!(value.raw() instanceof Boolean)) {
+                    throw new ConfigException(String.format("Unable to cast value=%s of type %s", value.raw(), value.raw().getClass()));
+                }
+                return value.raw();
+            };
+        }
+        if (c == Object.class) {
+            return ConfigValue::raw;
+        }
+        if (c == List.class && generic instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) generic).getActualTypeArguments()[0];
+            if (element == String.class) {
+                return ConfigValue::getStringList;
+            }
+            if (element == Integer.class) {
+                return ConfigValue::getIntList;
+            }
+            if (element == Double.class) {
+                return ConfigValue::getDoubleList;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unable to bind %s of %s, type %s is not supported", name, owner.getName(), generic.getTypeName()));
+    }
+}
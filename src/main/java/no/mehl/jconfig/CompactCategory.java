@@ -0,0 +1,171 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compiled category stored in columns instead of one map entry and compiled value per key. Keys are
+ * interned and sorted, every entry has a fixed size slot in a byte buffer holding its type and either
+ * an unboxed number or an index into an array of interned strings and compiled lists and maps.
+ *
+ * Values are created on read, except for lists and maps which are compiled once.
+ */
+final class CompactCategory extends AbstractMap<String, ConfigValue> {
+
+    private static final int SLOT = 9;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte NUMBER = 2;
+    private static final byte TRUE = 3;
+    private static final byte FALSE = 4;
+    private static final byte COMPILED = 5;
+
+    private final String[] keys;
+    private final ByteBuffer slots;
+    private final Object[] objects;
+
+    private CompactCategory(String[] keys, ByteBuffer slots, Object[] objects) {
+        this.keys = keys;
+        this.slots = slots;
+        this.objects = objects;
+    }
+
+    static CompactCategory of(Category category, boolean direct) {
+        String[] keys = new String[category.size()];
+        int i = 0;
+        int objectCount = 0;
+        for (Map.Entry<String, Object> value : category.entrySet()) {
+            keys[i++] = value.getKey().intern();
+            if (value.getValue() instanceof String || value.getValue() instanceof List || value.getValue() instanceof Map) {
+                objectCount++;
+            }
+        }
+        Arrays.sort(keys);
+
+        ByteBuffer slots = direct ? ByteBuffer.allocateDirect(keys.length * SLOT) : ByteBuffer.allocate(keys.length * SLOT);
+        Object[] objects = new Object[objectCount];
+        int object = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            Object value = category.get(keys[slot]);
+            int position = slot * SLOT;
+            if (value == null) {
+                slots.put(position, NULL);
+            } else if (value instanceof Double) {
+                slots.put(position, NUMBER);
+                slots.putDouble(position + 1, (Double) value);
+            } else if (value instanceof Boolean) {
+                slots.put(position, (Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof String) {
+                slots.put(position, STRING);
+                slots.putInt(position + 1, object);
+                objects[object++] = ((String) value).intern();
+            } else {
+                slots.put(position, COMPILED);
+                slots.putInt(position + 1, object);
+                objects[object++] = ConfigValue.of(value);
+            }
+        }
+        return new CompactCategory(keys, slots, objects);
+    }
+
+    /**
+     * Returns the value of a key as parsed, without creating a compiled value.
+     */
+    Object raw(String key) {
+        int slot = Arrays.binarySearch(keys, key);
+        return slot < 0 ? null : raw(slot);
+    }
+
+    private Object raw(int slot) {
+        int position = slot * SLOT;
+        switch (slots.get(position)) {
+            case NUMBER:
+                return slots.getDouble(position + 1);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case STRING:
+                return objects[slots.getInt(position + 1)];
+            case COMPILED:
+                return ((ConfigValue) objects[slots.getInt(position + 1)]).raw();
+            default:
+                return null;
+        }
+    }
+
+    private ConfigValue value(int slot) {
+        if (slots.get(slot * SLOT) == COMPILED) {
+            return (ConfigValue) objects[slots.getInt(slot * SLOT + 1)];
+        }
+        return ConfigValue.of(raw(slot));
+    }
+
+    @Override
+    public ConfigValue get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int slot = Arrays.binarySearch(keys, key);
+        return slot < 0 ? null : value(slot);
+    }
+
+    /**
+     * The keys of this category in sorted order, not to be modified.
+     */
+    String[] sortedKeys() {
+        return keys;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public Set<Entry<String, ConfigValue>> entrySet() {
+        return new AbstractSet<Entry<String, ConfigValue>>() {
+            @Override
+            public Iterator<Entry<String, ConfigValue>> iterator() {
+                return new Iterator<Entry<String, ConfigValue>>() {
+                    private int slot;
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, ConfigValue> next() {
+                        if (slot >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, ConfigValue> entry = new SimpleImmutableEntry<>(keys[slot], value(slot));
+                        slot++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package no.mehl.jconfig;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Map;
+
+/**
+ * A category bound to an object of a type, created by {@link ConfigManager#bind(String, Class)}. The object
+ * is created once per reload that changed the category, so reading the current object is a single volatile
+ * read. Bindings are rebound by the manager before listeners are notified of a change.
+ *
+ * A class is bound by setting its fields after calling its constructor without parameters, fields missing
+ * from the category keep the value set by the constructor. Its values are read with plain field access, bind
+ * a class where values are read on hot paths. An interface is bound by implementing its methods with a
+ * {@link java.lang.reflect.Proxy}, methods named like getters are bound to the key without the get or is
+ * prefix. Each call of a method goes through the invocation handler of the proxy and boxes primitives.
+ * Values can be strings, numbers, booleans and lists of strings, integers or doubles, {@link Key} sets
+ * another key.
+ *
+ * Bindings are held by the manager for its lifetime, create them once and keep them around.
+ */
+public final class ConfigBinding<T> {
+
+    /**
+     * Key of a field or method, when it is not the name of the field or method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    public @interface Key {
+        String value();
+    }
+
+    private final String category;
+    private final BindingPlan<T> plan;
+
+    private volatile Bound<T> bound = new Bound<>(null, new ConfigException("No config loaded, unable to get value"));
+    private Map<String, ConfigValue> source;
+    private long version = -1;
+
+    ConfigBinding(String category, BindingPlan<T> plan) {
+        this.category = category;
+        this.plan = plan;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Class<T> getType() {
+        return plan.getType();
+    }
+
+    /**
+     * Returns the object bound to the latest snapshot, throws {@link ConfigException} if the category is
+     * missing or a value could not be converted.
+     */
+    public T get() {
+        Bound<T> current = bound;
+        if (current.error != null) {
+            throw current.error;
+        }
+        return current.instance;
+    }
+
+    /**
+     * Binds to a snapshot, unless already bound to a newer one. A new object is only created if the category
+     * is not the same instance as in the snapshot bound before.
+     */
+    synchronized void bind(ConfigSnapshot snapshot) {
+        if (snapshot.getVersion() < version) {
+            return;
+        }
+        version = snapshot.getVersion();
+        Map<String, ConfigValue> values = snapshot.isLoaded() ? snapshot.categories().get(category) : null;
+        if (values != null && values == source) {
+            return;
+        }
+        source = values;
+        if (!snapshot.isLoaded()) {
+            bound = new Bound<>(null, new ConfigException("No config loaded, unable to get value"));
+        } else if (values == null) {
+            bound = new Bound<>(null, new ConfigException(String.format("Category %s does not exist", category)));
+        } else {
+            try {
+                bound = new Bound<>(plan.materialize(values), null);
+            } catch (ConfigException e) {
+                bound = new Bound<>(null, e);
+            }
+        }
+    }
+
+    private static final class Bound<T> {
+        private final T instance;
+        private final ConfigException error;
+
+        private Bound(T instance, ConfigException error) {
+            this.instance = instance;
+            this.error = error;
+        }
+    }
+}
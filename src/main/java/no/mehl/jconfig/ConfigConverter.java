@@ -0,0 +1,31 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool converting a json config to the binary format loaded by
+ * {@link ConfigManager.ConfigManagerBuilder#withBinaryFile(String)}.
+ *
+ * Usage: java no.mehl.jconfig.ConfigConverter config.json config.bin
+ */
+public class ConfigConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: ConfigConverter <json input> <binary output>");
+            System.exit(1);
+        }
+        ConfigParser parser = new ConfigParser();
+        Path output = Paths.get(args[1]);
+        Config config = parser.parseFile(Paths.get(args[0]));
+        if (config == null) {
+            System.err.println("Input is empty: " + args[0]);
+            System.exit(1);
+        }
+        parser.writeBinary(config, output);
+        System.out.println(String.format("Wrote %d categories to %s", config.size(), output));
+    }
+}
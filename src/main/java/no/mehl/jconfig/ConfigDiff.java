@@ -0,0 +1,181 @@
+package no.mehl.jconfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Structural difference between two snapshots: added and removed categories, and the keys which were
+ * added, removed or changed within each category. Categories and values reused by the new snapshot are
+ * compared by identity, so unchanged parts of the config cost nothing to diff. Values which are not the same
+ * instance are compared by their raw value.
+ */
+public final class ConfigDiff {
+
+    private final ConfigSnapshot oldSnapshot;
+    private final ConfigSnapshot newSnapshot;
+    private final Set<String> addedCategories;
+    private final Set<String> removedCategories;
+    private final Map<String, Set<String>> addedKeys;
+    private final Map<String, Set<String>> removedKeys;
+    private final Map<String, Set<String>> changedKeys;
+
+    private ConfigDiff(ConfigSnapshot oldSnapshot, ConfigSnapshot newSnapshot,
+                       Set<String> addedCategories, Set<String> removedCategories,
+                       Map<String, Set<String>> addedKeys, Map<String, Set<String>> removedKeys,
+                       Map<String, Set<String>> changedKeys) {
+        this.oldSnapshot = oldSnapshot;
+        this.newSnapshot = newSnapshot;
+        this.addedCategories = addedCategories;
+        this.removedCategories = removedCategories;
+        this.addedKeys = addedKeys;
+        this.removedKeys = removedKeys;
+        this.changedKeys = changedKeys;
+    }
+
+    static ConfigDiff between(ConfigSnapshot oldSnapshot, ConfigSnapshot newSnapshot) {
+        Map<String, Map<String, ConfigValue>> oldCategories = oldSnapshot.categories();
+        Map<String, Map<String, ConfigValue>> newCategories = newSnapshot.categories();
+        Set<String> addedCategories = new HashSet<>();
+        Set<String> removedCategories = new HashSet<>();
+        Map<String, Set<String>> addedKeys = new HashMap<>();
+        Map<String, Set<String>> removedKeys = new HashMap<>();
+        Map<String, Set<String>> changedKeys = new HashMap<>();
+
+        for (Map.Entry<String, Map<String, ConfigValue>> category : newCategories.entrySet()) {
+            Map<String, ConfigValue> oldValues = oldCategories.get(category.getKey());
+            Map<String, ConfigValue> newValues = category.getValue();
+            if (oldValues == newValues) {
+                continue;
+            }
+            if (oldValues == null) {
+                addedCategories.add(category.getKey());
+                oldValues = Collections.emptyMap();
+            }
+            for (Map.Entry<String, ConfigValue> value : newValues.entrySet()) {
+                ConfigValue oldValue = oldValues.get(value.getKey());
+                if (oldValue == null) {
+                    add(addedKeys, category.getKey(), value.getKey());
+                } else if (oldValue != value.getValue() && !Objects.equals(oldValue.raw(), value.getValue().raw())) {
+                    add(changedKeys, category.getKey(), value.getKey());
+                }
+            }
+            for (String key : oldValues.keySet()) {
+                if (!newValues.containsKey(key)) {
+                    add(removedKeys, category.getKey(), key);
+                }
+            }
+        }
+        for (Map.Entry<String, Map<String, ConfigValue>> category : oldCategories.entrySet()) {
+            if (!newCategories.containsKey(category.getKey())) {
+                removedCategories.add(category.getKey());
+                for (String key : category.getValue().keySet()) {
+                    add(removedKeys, category.getKey(), key);
+                }
+            }
+        }
+        return new ConfigDiff(oldSnapshot, newSnapshot, addedCategories, removedCategories, addedKeys, removedKeys, changedKeys);
+    }
+
+    /**
+     * Merges two consecutive diffs into one diff from the old snapshot of the first to the new snapshot of the second.
+     */
+    static ConfigDiff merge(ConfigDiff first, ConfigDiff second) {
+        return between(first.oldSnapshot, second.newSnapshot);
+    }
+
+    private static void add(Map<String, Set<String>> keys, String category, String key) {
+        keys.computeIfAbsent(category, c -> new HashSet<>()).add(key);
+    }
+
+    /**
+     * Returns the part of this diff concerning a category, or a single key if key is not null.
+     */
+    ConfigDiff filter(String category, String key) {
+        return new ConfigDiff(oldSnapshot, newSnapshot,
+                key == null ? filterCategories(addedCategories, category) : Collections.emptySet(),
+                key == null ? filterCategories(removedCategories, category) : Collections.emptySet(),
+                filterKeys(addedKeys, category, key),
+                filterKeys(removedKeys, category, key),
+                filterKeys(changedKeys, category, key));
+    }
+
+    private static Set<String> filterCategories(Set<String> categories, String category) {
+        return categories.contains(category) ? Collections.singleton(category) : Collections.emptySet();
+    }
+
+    private static Map<String, Set<String>> filterKeys(Map<String, Set<String>> keys, String category, String key) {
+        Set<String> categoryKeys = keys.get(category);
+        if (categoryKeys == null || (key != null && !categoryKeys.contains(key))) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(category, key == null ? categoryKeys : Collections.singleton(key));
+    }
+
+    public ConfigSnapshot getOldSnapshot() {
+        return oldSnapshot;
+    }
+
+    public ConfigSnapshot getNewSnapshot() {
+        return newSnapshot;
+    }
+
+    public boolean isEmpty() {
+        return addedCategories.isEmpty() && removedCategories.isEmpty()
+                && addedKeys.isEmpty() && removedKeys.isEmpty() && changedKeys.isEmpty();
+    }
+
+    public Set<String> getAddedCategories() {
+        return Collections.unmodifiableSet(addedCategories);
+    }
+
+    public Set<String> getRemovedCategories() {
+        return Collections.unmodifiableSet(removedCategories);
+    }
+
+    /**
+     * Categories which exist in both snapshots but have added, removed or changed keys.
+     */
+    public Set<String> getChangedCategories() {
+        Set<String> categories = new HashSet<>(addedKeys.keySet());
+        categories.addAll(removedKeys.keySet());
+        categories.addAll(changedKeys.keySet());
+        categories.removeAll(addedCategories);
+        categories.removeAll(removedCategories);
+        return categories;
+    }
+
+    public Set<String> getAddedKeys(String category) {
+        return keys(addedKeys, category);
+    }
+
+    public Set<String> getRemovedKeys(String category) {
+        return keys(removedKeys, category);
+    }
+
+    public Set<String> getChangedKeys(String category) {
+        return keys(changedKeys, category);
+    }
+
+    /**
+     * Returns true if the key was added, removed or changed.
+     */
+    public boolean affects(String category, String key) {
+        return getAddedKeys(category).contains(key) || getRemovedKeys(category).contains(key)
+                || getChangedKeys(category).contains(key);
+    }
+
+    private static Set<String> keys(Map<String, Set<String>> keys, String category) {
+        Set<String> categoryKeys = keys.get(category);
+        return categoryKeys == null ? Collections.emptySet() : Collections.unmodifiableSet(categoryKeys);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConfigDiff{addedCategories=%s, removedCategories=%s, addedKeys=%s, removedKeys=%s, changedKeys=%s}",
+                addedCategories, removedCategories, addedKeys, removedKeys, changedKeys);
+    }
+}
@@ -0,0 +1,32 @@
+package no.mehl.jconfig;
+
+/**
+ * Interfaces for streaming config values to subscribers with backpressure, with the same methods and rules as
+ * {@code java.util.concurrent.Flow} and Reactive Streams, so a publisher is adapted to either by delegating
+ * each method. Publishers are created by {@link ConfigManager}, see {@link ConfigManager#publisher(java.util.function.Supplier, java.util.concurrent.Executor)}.
+ */
+public final class ConfigFlow {
+
+    private ConfigFlow() {
+    }
+
+    public interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        void request(long n);
+
+        void cancel();
+    }
+}
@@ -0,0 +1,123 @@
+package no.mehl.jconfig;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A typed handle to a single config value, created by {@link ConfigManager}. The category and key are
+ * resolved once against each published {@link ConfigSnapshot}, so reading a handle is a single volatile
+ * read and does no map lookups. Handles are rebound by the manager before listeners are notified of a change.
+ *
+ * Handles are held by the manager for its lifetime, create them once and keep them around.
+ */
+public abstract class ConfigKey<T> {
+
+    private final String category;
+    private final String key;
+
+    private volatile ConfigValue value = ConfigValue.NULL;
+    private long version = -1;
+
+    ConfigKey(String category, String key) {
+        this.category = category;
+        this.key = key;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the value from the latest snapshot, throws {@link ConfigException} if missing or of wrong type.
+     */
+    public abstract T get();
+
+    ConfigValue value() {
+        return value;
+    }
+
+    /**
+     * Binds this handle to a snapshot, unless it is already bound to a newer one.
+     */
+    synchronized void bind(ConfigSnapshot snapshot) {
+        if (snapshot.getVersion() < version) {
+            return;
+        }
+        version = snapshot.getVersion();
+        value = snapshot.getValue(category, key);
+    }
+
+    public static final class StringKey extends ConfigKey<String> {
+        StringKey(String category, String key) {
+            super(category, key);
+        }
+
+        @Override
+        public String get() {
+            return value().getString();
+        }
+    }
+
+    public static final class IntKey extends ConfigKey<Integer> {
+        IntKey(String category, String key) {
+            super(category, key);
+        }
+
+        @Override
+        public Integer get() {
+            return getInt();
+        }
+
+        public int getInt() {
+            return value().getInt();
+        }
+    }
+
+    public static final class LongKey extends ConfigKey<Long> {
+        LongKey(String category, String key) {
+            super(category, key);
+        }
+
+        @Override
+        public Long get() {
+            return getLong();
+        }
+
+        public long getLong() {
+            return value().getLong();
+        }
+    }
+
+    public static final class DoubleKey extends ConfigKey<Double> {
+        DoubleKey(String category, String key) {
+            super(category, key);
+        }
+
+        @Override
+        public Double get() {
+            return getDouble();
+        }
+
+        public double getDouble() {
+            return value().getDouble();
+        }
+    }
+
+    public static final class ListKey<E> extends ConfigKey<List<E>> {
+        private final Function<ConfigValue, List<E>> reader;
+
+        ListKey(String category, String key, Function<ConfigValue, List<E>> reader) {
+            super(category, key);
+            this.reader = reader;
+        }
+
+        @Override
+        public List<E> get() {
+            return reader.apply(value());
+        }
+    }
+}
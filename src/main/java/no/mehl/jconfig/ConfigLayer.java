@@ -0,0 +1,20 @@
+package no.mehl.jconfig;
+
+/**
+ * Sources of config, in order of precedence. A key in a later layer overrides the same key in earlier
+ * layers, keys that are only in an earlier layer are kept.
+ */
+public enum ConfigLayer {
+
+    /** Config given to the builder, usually a resource packaged with the application */
+    DEFAULTS,
+
+    /** Config read by a file watcher */
+    FILE,
+
+    /** Config read by a remote file watcher */
+    REMOTE,
+
+    /** Values set at runtime with {@link ConfigManager#setOverride(String, String, Object)} */
+    OVERRIDES
+}
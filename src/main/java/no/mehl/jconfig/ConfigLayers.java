@@ -0,0 +1,181 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * The latest config of every source in every {@link ConfigLayer}, merged into one config when a source
+ * changes. Sources within a layer take precedence in the order they were added. Merged
+ * categories are kept, so a category is only merged again when one of its layers has changed it. A
+ * category found in a single layer is used as is.
+ *
+ * Not thread safe, the config manager changes layers while holding its lock.
+ */
+final class ConfigLayers {
+
+    /** Source used for config given directly for a layer, always first within its layer */
+    static final int LAYER_SOURCE = 0;
+
+    private final Map<ConfigLayer, Map<Integer, Supplier<Config>>> layers = new EnumMap<>(ConfigLayer.class);
+    private Map<String, MergedCategory> merged = new HashMap<>();
+
+    void set(ConfigLayer layer, Config config) {
+        set(layer, LAYER_SOURCE, config);
+    }
+
+    void set(ConfigLayer layer, int source, Config config) {
+        if (config == null) {
+            Map<Integer, Supplier<Config>> sources = layers.get(layer);
+            if (sources != null) {
+                sources.remove(source);
+            }
+        } else {
+            sources(layer).put(source, () -> config);
+        }
+    }
+
+    /**
+     * Sets a layer which is read the first time it is merged with another layer.
+     */
+    void setLazy(ConfigLayer layer, Supplier<Config> config) {
+        sources(layer).put(LAYER_SOURCE, new Supplier<Config>() {
+            private Config value;
+
+            @Override
+            public Config get() {
+                if (value == null) {
+                    value = config.get();
+                }
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Returns true if no source other than the config given directly for the layer is set.
+     */
+    boolean isOnly(ConfigLayer layer) {
+        for (Map.Entry<ConfigLayer, Map<Integer, Supplier<Config>>> sources : layers.entrySet()) {
+            for (Integer source : sources.getValue().keySet()) {
+                if (sources.getKey() != layer || source != LAYER_SOURCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    Config get(ConfigLayer layer) {
+        Supplier<Config> config = sources(layer).get(LAYER_SOURCE);
+        return config != null ? config.get() : null;
+    }
+
+    /**
+     * Returns a copy of the sources of every layer, see {@link #restore(Map)}.
+     */
+    Map<ConfigLayer, Map<Integer, Supplier<Config>>> save() {
+        Map<ConfigLayer, Map<Integer, Supplier<Config>>> saved = new EnumMap<>(ConfigLayer.class);
+        for (Map.Entry<ConfigLayer, Map<Integer, Supplier<Config>>> layer : layers.entrySet()) {
+            saved.put(layer.getKey(), new TreeMap<>(layer.getValue()));
+        }
+        return saved;
+    }
+
+    /**
+     * Puts back the sources of every layer as they were saved.
+     */
+    void restore(Map<ConfigLayer, Map<Integer, Supplier<Config>>> saved) {
+        layers.clear();
+        for (Map.Entry<ConfigLayer, Map<Integer, Supplier<Config>>> layer : saved.entrySet()) {
+            layers.put(layer.getKey(), new TreeMap<>(layer.getValue()));
+        }
+    }
+
+    private Map<Integer, Supplier<Config>> sources(ConfigLayer layer) {
+        return layers.computeIfAbsent(layer, l -> new TreeMap<>());
+    }
+
+    /**
+     * Returns the merged config, or null if no layer has any config.
+     */
+    Config merge() {
+        List<Config> configs = new ArrayList<>(layers.size());
+        for (Map<Integer, Supplier<Config>> sources : layers.values()) {
+            for (Supplier<Config> source : sources.values()) {
+                Config config = source.get();
+                if (config != null) {
+                    configs.add(config);
+                }
+            }
+        }
+        if (configs.isEmpty()) {
+            return null;
+        }
+        if (configs.size() == 1) {
+            merged.clear();
+            return configs.get(0);
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (Config config : configs) {
+            names.addAll(config.keySet());
+        }
+        Config result = new Config();
+        Map<String, MergedCategory> categories = new HashMap<>();
+        for (String name : names) {
+            List<Category> sources = new ArrayList<>(configs.size());
+            for (Config config : configs) {
+                Category category = config.get(name);
+                if (category != null) {
+                    sources.add(category);
+                }
+            }
+            if (sources.size() == 1) {
+                result.put(name, sources.get(0));
+            } else if (!sources.isEmpty()) {
+                MergedCategory category = merged.get(name);
+                if (category == null || !category.isFrom(sources)) {
+                    category = new MergedCategory(sources);
+                }
+                categories.put(name, category);
+                result.put(name, category.category);
+            }
+        }
+        merged = categories;
+        return result;
+    }
+
+    private static class MergedCategory {
+        private final List<Category> sources;
+        private final Category category = new Category();
+
+        private MergedCategory(List<Category> sources) {
+            this.sources = sources;
+            for (Category source : sources) {
+                category.putAll(source);
+            }
+        }
+
+        private boolean isFrom(List<Category> other) {
+            if (other.size() != sources.size()) {
+                return false;
+            }
+            for (int i = 0; i < other.size(); i++) {
+                if (other.get(i) != sources.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
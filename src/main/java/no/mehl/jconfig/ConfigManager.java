@@ -1,125 +1,664 @@
 package no.mehl.jconfig;
 
 import no.mehl.jconfig.listener.ConfigChangeListener;
+import no.mehl.jconfig.listener.ConfigDiffListener;
 import no.mehl.jconfig.listener.ConfigManagerListener;
+import no.mehl.jconfig.metrics.ConfigMetrics;
+import no.mehl.jconfig.pojo.Category;
 import no.mehl.jconfig.pojo.Config;
 import no.mehl.jconfig.watcher.FileWatcher;
+import no.mehl.jconfig.watcher.PushRemoteFileWatcher;
 import no.mehl.jconfig.watcher.RemoteFileWatcher;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * This class encapsulates a {@link no.mehl.jconfig.pojo.Config} and provides means for getting
  * values and listening for config changes.
+ *
+ * The config is published as an immutable {@link ConfigSnapshot} which is swapped atomically on reload,
+ * getters are safe to call from any thread without locking.
  */
-public class ConfigManager implements ConfigChangeListener {
+public class ConfigManager implements ConfigChangeListener, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigManager.class);
 
-    private Optional<String> defaultCategory = Optional.of("local");
+    private String defaultCategory = "local";
 
-    private Optional<Config> config = Optional.empty();
-    private List<ConfigManagerListener> configListeners;
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY.withDefaultCategory(defaultCategory);
+    private List<ListenerDispatch<ConfigManager>> configListeners;
+    private List<DiffSubscription> diffListeners;
+    private List<ConfigKey<?>> keys;
+    private List<ConfigBinding<?>> bindings;
+    private List<ValuePublisher<?>> publishers;
     private ScheduledExecutorService pool;
+    private boolean ownsPool;
+    private final List<Closeable> closeables = new CopyOnWriteArrayList<>();
+    private ConfigMetrics metrics = ConfigMetrics.NOOP;
+    private ConfigStorage storage = ConfigStorage.HASH_MAP;
+    private ConfigSchema schema;
+    private LookupCache lookupCache;
+    private final ConfigLayers layers = new ConfigLayers();
+    private final Queue<LayerUpdate> updates = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final AtomicInteger sources = new AtomicInteger();
+    private final AtomicBoolean updatesScheduled = new AtomicBoolean();
+    private long reloadWindowNanos;
+    private long minPublishIntervalNanos;
+    private volatile long nextPublishNanos = System.nanoTime();
 
     private ConfigManager() {
-        configListeners = new ArrayList<>();
-        pool = new ScheduledThreadPoolExecutor(1);
+        configListeners = new CopyOnWriteArrayList<>();
+        diffListeners = new CopyOnWriteArrayList<>();
+        keys = new CopyOnWriteArrayList<>();
+        bindings = new CopyOnWriteArrayList<>();
+        publishers = new CopyOnWriteArrayList<>();
     }
 
     public String getString(String key) {
-        return getString(defaultCategory.get(), key);
+        return getString(defaultCategory, key);
     }
 
     public String getString(String category, String key) {
-        return parseTypedProperty(getCategoryValue(category, key), String.class);
+        ConfigValue value = lookup(category, key);
+        try {
+            return value.getString();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
+        }
     }
 
     public String getInt(String key) {
-        return getString(defaultCategory.get(), key);
+        return getString(defaultCategory, key);
     }
 
     public int getInt(String category, String key) {
-        return parseTypedProperty(getCategoryValue(category, key), Double.class).intValue();
+        ConfigValue value = lookup(category, key);
+        try {
+            return value.getInt();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
+        }
+    }
+
+    public long getLong(String key) {
+        return getLong(defaultCategory, key);
+    }
+
+    public long getLong(String category, String key) {
+        ConfigValue value = lookup(category, key);
+        try {
+            return value.getLong();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
+        }
+    }
+
+    public double getDouble(String key) {
+        return getDouble(defaultCategory, key);
+    }
+
+    public double getDouble(String category, String key) {
+        ConfigValue value = lookup(category, key);
+        try {
+            return value.getDouble();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
+        }
     }
 
     public List<String> getStringList(String key) {
-        return getStringList(defaultCategory.get(), key);
+        return getStringList(defaultCategory, key);
     }
 
     public List<String> getStringList(String category, String key) {
+        ConfigValue value = lookup(category, key);
         try {
-            List l = parseTypedProperty(getCategoryValue(category, key), List.class);
-            return Arrays.asList(Arrays.copyOf(l.toArray(), l.size(), String[].class));
-        } catch (ArrayStoreException e) {
-            throw new ConfigException("Unable to create list of strings", e);
+            return value.getStringList();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
         }
     }
 
     public List<Integer> getIntList(String key) {
-        return getIntList(defaultCategory.get(), key);
+        return getIntList(defaultCategory, key);
     }
 
     private List<Integer> getIntList(String category, String key) {
-        List<Double> doubles = getDoubleList(category, key);
-        return doubles.stream().filter(this::isInt).map(Double::intValue).collect(Collectors.toList());
+        ConfigValue value = lookup(category, key);
+        try {
+            return value.getIntList();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
+        }
     }
 
     public List<Double> getDoubleList(String key) {
-        return getDoubleList(defaultCategory.get(), key);
+        return getDoubleList(defaultCategory, key);
     }
 
     private List<Double> getDoubleList(String category, String key) {
+        ConfigValue value = lookup(category, key);
         try {
-            List l = parseTypedProperty(getCategoryValue(category, key), List.class);
-            return Arrays.asList(Arrays.copyOf(l.toArray(), l.size(), Double[].class));
-        } catch (ArrayStoreException e) {
-            e.printStackTrace();
-            throw new ConfigException("Unable to create list of integers", e);
+            return value.getDoubleList();
+        } catch (ConfigException e) {
+            throw typeError(category, key, value, e);
+        }
+    }
+
+    /**
+     * Returns a read-only view of a category, see {@link ConfigSnapshot#getCategory(String)}.
+     */
+    public Map<String, Object> getCategory(String category) {
+        return snapshot.getCategory(category);
+    }
+
+    public Map<String, Object> getValues(String category, String... keys) {
+        return snapshot.getValues(category, keys);
+    }
+
+    public Map<String, Object> getPrefix(String category, String prefix) {
+        return snapshot.getPrefix(category, prefix);
+    }
+
+    public Map<String, Object> getRange(String category, String fromKey, String toKey) {
+        return snapshot.getRange(category, fromKey, toKey);
+    }
+
+    private ConfigValue lookup(String category, String key) {
+        ConfigValue value = lookupCache == null ? snapshot.getValue(category, key) : lookupCache.get(snapshot, category, key);
+        metrics.lookup(category, key);
+        if (value.isMissing()) {
+            metrics.miss(category, key);
         }
+        return value;
+    }
+
+    /**
+     * Returns the cache of values read by category and key, with its hit and miss counts, or null if the
+     * manager was built without one or with {@link ConfigStorage#HASH_MAP} storage.
+     */
+    public LookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    private ConfigException typeError(String category, String key, ConfigValue value, ConfigException e) {
+        if (!value.isMissing()) {
+            metrics.typeError(category, key);
+        }
+        return e;
+    }
+
+    /**
+     * Returns the current snapshot of the config. Values read from the returned snapshot are consistent
+     * with each other, even if the config is reloaded while reading.
+     */
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public ConfigKey.StringKey stringKey(String key) {
+        return stringKey(defaultCategory, key);
+    }
+
+    public ConfigKey.StringKey stringKey(String category, String key) {
+        return register(new ConfigKey.StringKey(category, key));
+    }
+
+    public ConfigKey.IntKey intKey(String key) {
+        return intKey(defaultCategory, key);
+    }
+
+    public ConfigKey.IntKey intKey(String category, String key) {
+        return register(new ConfigKey.IntKey(category, key));
+    }
+
+    public ConfigKey.LongKey longKey(String key) {
+        return longKey(defaultCategory, key);
+    }
+
+    public ConfigKey.LongKey longKey(String category, String key) {
+        return register(new ConfigKey.LongKey(category, key));
+    }
+
+    public ConfigKey.DoubleKey doubleKey(String key) {
+        return doubleKey(defaultCategory, key);
+    }
+
+    public ConfigKey.DoubleKey doubleKey(String category, String key) {
+        return register(new ConfigKey.DoubleKey(category, key));
+    }
+
+    public ConfigKey.ListKey<String> stringListKey(String key) {
+        return stringListKey(defaultCategory, key);
+    }
+
+    public ConfigKey.ListKey<String> stringListKey(String category, String key) {
+        return register(new ConfigKey.ListKey<>(category, key, ConfigValue::getStringList));
+    }
+
+    public ConfigKey.ListKey<Integer> intListKey(String key) {
+        return intListKey(defaultCategory, key);
+    }
+
+    public ConfigKey.ListKey<Integer> intListKey(String category, String key) {
+        return register(new ConfigKey.ListKey<>(category, key, ConfigValue::getIntList));
+    }
+
+    public ConfigKey.ListKey<Double> doubleListKey(String key) {
+        return doubleListKey(defaultCategory, key);
+    }
+
+    public ConfigKey.ListKey<Double> doubleListKey(String category, String key) {
+        return register(new ConfigKey.ListKey<>(category, key, ConfigValue::getDoubleList));
+    }
+
+    public <T> ConfigBinding<T> bind(Class<T> type) {
+        return bind(defaultCategory, type);
+    }
+
+    /**
+     * Binds a category to an object of a class or interface, see {@link ConfigBinding}. Throws
+     * IllegalArgumentException if the type can not be bound.
+     */
+    public <T> ConfigBinding<T> bind(String category, Class<T> type) {
+        ConfigBinding<T> binding = new ConfigBinding<>(category, BindingPlan.of(type));
+        bindings.add(binding);
+        binding.bind(snapshot);
+        return binding;
+    }
+
+    /**
+     * Publishes the value of a key, see {@link #publisher(Supplier, Executor)}.
+     */
+    public <T> ConfigFlow.Publisher<T> publisher(ConfigKey<T> key) {
+        return publisher(key::get, null);
+    }
+
+    /**
+     * Publishes the object bound to a category, a new object is only published when the category changed.
+     */
+    public <T> ConfigFlow.Publisher<T> publisher(ConfigBinding<T> binding) {
+        return publisher(binding::get, null);
+    }
+
+    /**
+     * Publishes a read-only view of a category, see {@link ConfigSnapshot#getCategory(String)}. A new view is
+     * only published when the category changed.
+     */
+    public ConfigFlow.Publisher<Map<String, Object>> publisher(String category) {
+        return publisher(() -> snapshot.getCategory(category), null);
+    }
+
+    /**
+     * Publishes a value read from the config after every reload. Subscribers get the current value, then every
+     * value not equal to the one before, as far as they have requested values. A subscriber which is behind
+     * only gets the latest value. Values which can not be read, or are null, are not published.
+     *
+     * Values are given to subscribers on the given executor, or on the reloading or requesting thread if the
+     * executor is null. Subscribers are completed when the config manager is closed. Publishers are held by
+     * the manager for its lifetime, create them once and keep them around.
+     */
+    public <T> ConfigFlow.Publisher<T> publisher(Supplier<T> value, Executor executor) {
+        ValuePublisher<T> publisher = new ValuePublisher<>(value, executor);
+        publishers.add(publisher);
+        return publisher;
+    }
+
+    private <K extends ConfigKey<?>> K register(K key) {
+        keys.add(key);
+        key.bind(snapshot);
+        return key;
+    }
+
+    /**
+     * Adds a listener which is called on the reloading thread after every reload.
+     */
+    public ListenerStats addConfigChangedListener(ConfigManagerListener listener) {
+        return addConfigChangedListener(listener, null);
+    }
+
+    /**
+     * Adds a listener which is called on the given executor after every reload, so a slow listener does not
+     * delay other listeners or the next reload. Reloads happening while the listener is behind are coalesced
+     * into a single call. Any executor can be used, e.g. a virtual thread executor on newer JDKs.
+     */
+    public ListenerStats addConfigChangedListener(ConfigManagerListener listener, Executor executor) {
+        ListenerDispatch<ConfigManager> dispatch = new ListenerDispatch<>(listener, listener::configChanged, executor, (older, newer) -> newer, metrics);
+        configListeners.add(dispatch);
+        return dispatch.getStats();
+    }
+
+    public void removeConfigChangedListener(ConfigManagerListener listener) {
+        configListeners.removeIf(dispatch -> dispatch.isFor(listener));
+    }
+
+    /**
+     * Adds a listener which receives the changes of every reload that changed anything.
+     */
+    public ListenerStats addConfigDiffListener(ConfigDiffListener listener) {
+        return addConfigDiffListener(null, null, listener, null);
+    }
+
+    /**
+     * Adds a listener which is only notified when keys in the given category are added, removed or changed.
+     */
+    public ListenerStats addConfigDiffListener(String category, ConfigDiffListener listener) {
+        return addConfigDiffListener(category, null, listener, null);
+    }
+
+    /**
+     * Adds a listener which is only notified when the given key is added, removed or changed.
+     */
+    public ListenerStats addConfigDiffListener(String category, String key, ConfigDiffListener listener) {
+        return addConfigDiffListener(category, key, listener, null);
+    }
+
+    /**
+     * Adds a diff listener for a category, a key or the whole config (null category) which is called on the
+     * given executor. Diffs of reloads happening while the listener is behind are merged into one diff.
+     */
+    public ListenerStats addConfigDiffListener(String category, String key, ConfigDiffListener listener, Executor executor) {
+        DiffSubscription subscription = new DiffSubscription(category, key, listener, executor, metrics);
+        diffListeners.add(subscription);
+        return subscription.dispatch.getStats();
+    }
+
+    public void removeConfigDiffListener(ConfigDiffListener listener) {
+        diffListeners.removeIf(subscription -> subscription.dispatch.isFor(listener));
+    }
+
+    /**
+     * Replaces the {@link ConfigLayer#DEFAULTS} layer, which is the whole config unless other layers are used.
+     */
+    @Override
+    public void configChanged(Config newConfig) {
+        configChanged(ConfigLayer.DEFAULTS, newConfig);
+    }
+
+    /**
+     * Replaces the config of one layer, a null config removes the layer. The layers are merged and the
+     * merged config is published as a new snapshot before this method returns.
+     */
+    public void configChanged(ConfigLayer layer, Config newConfig) {
+        updates.add(new LayerUpdate(layer, ConfigLayers.LAYER_SOURCE, () -> newConfig, 0));
+        applyUpdates(true);
+    }
+
+    /**
+     * Listener for a source of a layer. Sources finishing while another one is being published do not wait,
+     * their configs are merged into one snapshot by the thread holding the lock. With a reload window or a
+     * minimum publish interval the updates are applied later on the pool, see {@link #scheduleUpdates()}.
+     */
+    ConfigChangeListener sourceListener(ConfigLayer layer) {
+        int source = sources.incrementAndGet();
+        return new ConfigChangeListener() {
+            @Override
+            public void configChanged(Config newConfig) {
+                sourceChanged(() -> newConfig);
+            }
+
+            @Override
+            public void sourceChanged(Supplier<Config> newConfig) {
+                sourceChanged(newConfig, 0);
+            }
+
+            @Override
+            public void sourceChanged(Supplier<Config> newConfig, long modifiedMillis) {
+                updates.add(new LayerUpdate(layer, source, newConfig, modifiedMillis));
+                scheduleUpdates();
+            }
+        };
     }
 
-    private Object getCategoryValue(String category, String key) {
-        if (!config.isPresent()) {
-            throw new ConfigException("No config loaded, unable to get value");
+    /**
+     * Applies source updates once the reload window has passed since the first of them arrived, and no
+     * sooner than the minimum publish interval after the last publish. Updates arriving in the meantime are
+     * applied together, and only the latest config of each source is parsed.
+     */
+    private void scheduleUpdates() {
+        long delay = Math.max(reloadWindowNanos, nextPublishNanos - System.nanoTime());
+        if (delay <= 0 || pool == null) {
+            applyUpdates(false);
+            return;
+        }
+        if (!updatesScheduled.compareAndSet(false, true)) {
+            return;
         }
-        Map<String, Object> env = config.get().get(category);
-        if (env == null) {
-            throw new ConfigException(String.format("Category %s does not exist", category));
+        try {
+            pool.schedule(() -> {
+                updatesScheduled.set(false);
+                applyUpdates(true);
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            updatesScheduled.set(false);
+            applyUpdates(false);
         }
-        return env.get(key);
     }
 
-    private boolean isInt(double d) {
-        if(d == Math.floor(d) && !Double.isInfinite(d)) {
-            return true;
+    /**
+     * Applies queued layer updates and publishes one snapshot for all of them. Waits for the lock if asked
+     * to, otherwise leaves the updates to the thread holding it, which checks the queue again after unlocking.
+     *
+     * Updates are applied in stages: superseded updates of a source are dropped, the rest are parsed, layers
+     * are merged, and the merged config is compiled, validated, published and given to listeners. A source
+     * whose config can not be parsed keeps its previous config. If the merged config can not be compiled or the
+     * schema rejects it, every layer is put back as it was and the error is logged, so the previous snapshot
+     * stays published and the watcher applying the update keeps running.
+     */
+    private void applyUpdates(boolean wait) {
+        boolean first = wait;
+        while (first || !updates.isEmpty()) {
+            if (first) {
+                reloadLock.lock();
+                first = false;
+            } else if (!reloadLock.tryLock()) {
+                return;
+            }
+            try {
+                Map<ConfigLayer, Map<Integer, Supplier<Config>>> saved = layers.save();
+                Map<String, LayerUpdate> latest = new LinkedHashMap<>();
+                LayerUpdate update;
+                while ((update = updates.poll()) != null) {
+                    latest.put(update.key(), update);
+                }
+                boolean changed = false;
+                long modified = 0;
+                for (LayerUpdate pending : latest.values()) {
+                    Config config;
+                    try {
+                        config = pending.config.get();
+                    } catch (ConfigException e) {
+                        logger.error("Unable to parse config for layer={}, layer will be unchanged.", pending.layer, e);
+                        continue;
+                    }
+                    layers.set(pending.layer, pending.source, config);
+                    changed = true;
+                    modified = Math.max(modified, pending.modifiedMillis);
+                }
+                if (changed) {
+                    try {
+                        reload(layers.merge());
+                        if (modified > 0) {
+                            metrics.fileReloaded(System.currentTimeMillis() - modified);
+                        }
+                    } catch (ConfigException e) {
+                        layers.restore(saved);
+                        logger.error("Reloaded config was rejected, the last valid config stays published.", e);
+                    }
+                }
+            } finally {
+                reloadLock.unlock();
+            }
         }
-        throw new ConfigException(String.format("Value=%f is not an integer", d));
     }
 
-    private <T> T parseTypedProperty(Object value, Class<T> clazz) {
-        if (value == null) {
-            throw new ConfigException("Value was null");
+    /**
+     * Sets a value in the {@link ConfigLayer#OVERRIDES} layer, which takes precedence over every source.
+     */
+    public void setOverride(String category, String key, Object value) {
+        reloadLock.lock();
+        try {
+            Config overrides = copyOverrides();
+            overrides.computeIfAbsent(category, name -> new Category()).put(key, value);
+            configChanged(ConfigLayer.OVERRIDES, overrides);
+        } finally {
+            reloadLock.unlock();
         }
+    }
+
+    /**
+     * Removes a value set with {@link #setOverride(String, String, Object)}, the value of the sources is used again.
+     */
+    public void removeOverride(String category, String key) {
+        reloadLock.lock();
         try {
-            return clazz.cast(value);
-        } catch (ClassCastException e) {
-            throw new ConfigException(String.format("Unable to cast value=%s of type %s", value, value.getClass()));
+            Config overrides = copyOverrides();
+            Category values = overrides.get(category);
+            if (values == null || !values.containsKey(key)) {
+                return;
+            }
+            values.remove(key);
+            if (values.isEmpty()) {
+                overrides.remove(category);
+            }
+            configChanged(ConfigLayer.OVERRIDES, overrides.isEmpty() ? null : overrides);
+        } finally {
+            reloadLock.unlock();
         }
     }
 
-    public void addConfigChangedListener(ConfigManagerListener listener) {
-        configListeners.add(listener);
+    /**
+     * Copies the overrides layer, categories are copied so merged categories of the old layer stay unchanged.
+     */
+    private Config copyOverrides() {
+        Config copy = new Config();
+        Config overrides = layers.get(ConfigLayer.OVERRIDES);
+        if (overrides != null) {
+            for (Map.Entry<String, Category> category : overrides.entrySet()) {
+                Category values = new Category();
+                values.putAll(category.getValue());
+                copy.put(category.getKey(), values);
+            }
+        }
+        return copy;
     }
 
-    @Override
-    public void configChanged(Config newConfig) {
-        this.config = Optional.ofNullable(newConfig);
-        for (ConfigManagerListener ccl : configListeners) {
-            ccl.configChanged(this);
+    private void reload(Config newConfig) {
+        ConfigSnapshot oldSnapshot = snapshot;
+        ConfigSnapshot newSnapshot = load(newConfig);
+        for (ConfigKey<?> key : keys) {
+            key.bind(newSnapshot);
+        }
+        for (ConfigBinding<?> binding : bindings) {
+            binding.bind(newSnapshot);
+        }
+        for (ValuePublisher<?> publisher : publishers) {
+            publisher.changed();
+        }
+        for (ListenerDispatch<ConfigManager> dispatch : configListeners) {
+            dispatch.dispatch(this);
+        }
+        if (!diffListeners.isEmpty()) {
+            ConfigDiff diff = ConfigDiff.between(oldSnapshot, newSnapshot);
+            if (!diff.isEmpty()) {
+                for (DiffSubscription subscription : diffListeners) {
+                    subscription.notify(diff);
+                }
+            }
+        }
+    }
+
+    private ConfigSnapshot load(Config config) {
+        long start = System.nanoTime();
+        ConfigSnapshot newSnapshot = ConfigSnapshot.compile(config, defaultCategory, snapshot, storage);
+        validate(newSnapshot);
+        publish(newSnapshot, start);
+        return newSnapshot;
+    }
+
+    /**
+     * Throws {@link ConfigException} if the snapshot does not match the schema.
+     */
+    private void validate(ConfigSnapshot newSnapshot) {
+        if (schema == null) {
+            return;
+        }
+        List<String> errors = schema.validate(newSnapshot, snapshot);
+        if (!errors.isEmpty()) {
+            metrics.rejected(errors);
+            throw new ConfigException("Config does not match the schema: " + String.join(", ", errors));
+        }
+    }
+
+    private void publish(ConfigSnapshot newSnapshot, long start) {
+        this.snapshot = newSnapshot;
+        this.nextPublishNanos = System.nanoTime() + minPublishIntervalNanos;
+        metrics.published(newSnapshot, System.nanoTime() - start);
+    }
+
+    private static class LayerUpdate {
+        private final ConfigLayer layer;
+        private final int source;
+        private final Supplier<Config> config;
+        private final long modifiedMillis;
+
+        private LayerUpdate(ConfigLayer layer, int source, Supplier<Config> config, long modifiedMillis) {
+            this.layer = layer;
+            this.source = source;
+            this.config = config;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        private String key() {
+            return layer + "/" + source;
+        }
+    }
+
+    private static class DiffSubscription {
+        private final String category;
+        private final String key;
+        private final ListenerDispatch<ConfigDiff> dispatch;
+
+        private DiffSubscription(String category, String key, ConfigDiffListener listener, Executor executor, ConfigMetrics metrics) {
+            this.category = category;
+            this.key = key;
+            this.dispatch = new ListenerDispatch<>(listener, diff -> {
+                ConfigDiff relevant = relevant(diff);
+                if (!relevant.isEmpty()) {
+                    listener.configChanged(relevant);
+                }
+            }, executor, ConfigDiff::merge, metrics);
+        }
+
+        private ConfigDiff relevant(ConfigDiff diff) {
+            return category == null ? diff : diff.filter(category, key);
+        }
+
+        private void notify(ConfigDiff diff) {
+            if (!relevant(diff).isEmpty()) {
+                dispatch.dispatch(diff);
+            }
         }
     }
 
@@ -127,44 +666,343 @@ public class ConfigManager implements ConfigChangeListener {
 
         private ConfigManager configManager = new ConfigManager();
         private ConfigParser parser = new ConfigParser();
+        private List<Runnable> watchers = new ArrayList<>();
+        private int pollingSources;
+        private ScheduledExecutorService scheduler;
+        private int sourceThreads;
+        private double jitter = 0.1;
+        private boolean remoteDeltas;
+        private Path remoteCache;
+        private boolean sharedSources;
+        private int connectTimeoutMillis = RemoteFileWatcher.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private int readTimeoutMillis = RemoteFileWatcher.DEFAULT_READ_TIMEOUT_MILLIS;
 
         public ConfigManagerBuilder withConfig(Config config) {
-            configManager.config = Optional.ofNullable(config);
-            return this;
+            return withConfig(ConfigLayer.DEFAULTS, config);
         }
 
         public ConfigManagerBuilder withJson(String json) {
-            configManager.config = Optional.ofNullable(parser.parseJson(json));
-            return this;
+            return withJson(ConfigLayer.DEFAULTS, json);
         }
 
         public ConfigManagerBuilder withResources(String resourcePath) {
-            configManager.config = Optional.ofNullable(parser.parseFilePath(resourcePath));
+            return withResources(ConfigLayer.DEFAULTS, resourcePath);
+        }
+
+        /**
+         * Sets the config of a layer, replacing any config given for the same layer before.
+         */
+        public ConfigManagerBuilder withConfig(ConfigLayer layer, Config config) {
+            Map<ConfigLayer, Map<Integer, Supplier<Config>>> saved = configManager.layers.save();
+            configManager.layers.set(layer, config);
+            try {
+                configManager.load(configManager.layers.merge());
+            } catch (ConfigException e) {
+                configManager.layers.restore(saved);
+                throw e;
+            }
+            return this;
+        }
+
+        public ConfigManagerBuilder withJson(ConfigLayer layer, String json) {
+            return withConfig(layer, parser.parseJson(json));
+        }
+
+        public ConfigManagerBuilder withResources(ConfigLayer layer, String resourcePath) {
+            return withConfig(layer, parser.parseFilePath(resourcePath));
+        }
+
+        /**
+         * Memory maps a config written by {@link ConfigParser#writeBinary(Config, java.nio.file.Path)} as the
+         * defaults layer. Nothing is parsed up front, each category is decoded the first time it is read. The
+         * whole file is read and compiled with the configured storage if another layer is set, or storage other
+         * than {@link ConfigStorage#HASH_MAP} is selected, and when a layer is merged with it later.
+         */
+        public ConfigManagerBuilder withBinaryFile(String path) {
+            if (!configManager.layers.isOnly(ConfigLayer.DEFAULTS) || configManager.storage != ConfigStorage.HASH_MAP) {
+                return withConfig(ConfigLayer.DEFAULTS, parser.parseBinary(Paths.get(path)));
+            }
+            long start = System.nanoTime();
+            ConfigSnapshot mapped = ConfigSnapshot.of(BinaryConfig.map(Paths.get(path)), configManager.defaultCategory);
+            configManager.validate(mapped);
+            configManager.layers.setLazy(ConfigLayer.DEFAULTS, () -> BinaryConfig.read(Paths.get(path)));
+            configManager.publish(mapped, start);
+            return this;
+        }
+
+        /**
+         * Records lookups, parsing, fetching, reloads and listener dispatch. Set metrics before loading
+         * any config to have the initial load recorded. Metrics are disabled by default.
+         */
+        public ConfigManagerBuilder withMetrics(ConfigMetrics metrics) {
+            configManager.metrics = metrics;
+            parser = new ConfigParser(metrics, parser.isLazy());
+            return this;
+        }
+
+        /**
+         * Parses each category of config read by the builder and watchers the first time it is read, and
+         * skips categories whose json is unchanged on reload. Set before loading any config.
+         */
+        public ConfigManagerBuilder withLazyParsing() {
+            parser = new ConfigParser(configManager.metrics, true);
             return this;
         }
 
         public ConfigManagerBuilder withFileWatcher(String directory, String file, long interval, TimeUnit unit) {
-            configManager.pool.scheduleAtFixedRate(new FileWatcher(directory, file, configManager), 0, interval, unit);
+            return withPollingSource(() -> "file:" + Paths.get(directory, file).toAbsolutePath() + "|" + parser.isLazy(), ConfigLayer.FILE,
+                    listener -> new FileWatcher(directory, file, listener, parser), interval, unit);
+        }
+
+        /**
+         * Watches the file on a dedicated thread, reloading as soon as it changes instead of polling.
+         */
+        public ConfigManagerBuilder withBlockingFileWatcher(String directory, String file) {
+            return withBlockingFileWatcher(directory, file, 100, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Watches the file on a dedicated thread, events within the debounce period are reloaded once.
+         */
+        public ConfigManagerBuilder withBlockingFileWatcher(String directory, String file, long debounce, TimeUnit unit) {
+            watchers.add(() -> {
+                FileWatcher watcher = new FileWatcher(directory, file, configManager.sourceListener(ConfigLayer.FILE), parser);
+                configManager.closeables.add(watcher);
+                Thread thread = new Thread(() -> watcher.watch(debounce, unit), "config-file-watcher-" + file);
+                thread.setDaemon(true);
+                thread.start();
+            });
             return this;
         }
 
         public ConfigManagerBuilder withRemoteFileWatcher(String url, long interval, TimeUnit unit) {
-            configManager.pool.scheduleAtFixedRate(new RemoteFileWatcher(url, configManager), 0, interval, unit);
+            return withPollingSource(() -> "remote:" + url + "|" + parser.isLazy() + "|" + remoteDeltas + "|" + remoteCache, ConfigLayer.REMOTE, listener -> {
+                RemoteFileWatcher watcher = new RemoteFileWatcher(url, listener, parser, configManager.metrics, connectTimeoutMillis, readTimeoutMillis);
+                if (remoteDeltas) {
+                    watcher.withDeltas();
+                }
+                if (remoteCache != null) {
+                    watcher.withCache(remoteCache.resolve("remote-" + UUID.nameUUIDFromBytes(url.getBytes(StandardCharsets.UTF_8)) + ".cache"));
+                    watcher.loadCache();
+                }
+                return watcher;
+            }, interval, unit);
+        }
+
+        /**
+         * Stores the last config read by each remote file watcher in the directory. The stored config is
+         * loaded when the config manager is built, and the first request only revalidates it in the background.
+         * The stored config stays loaded while the server can not be reached.
+         */
+        public ConfigManagerBuilder withRemoteCache(String directory) {
+            this.remoteCache = Paths.get(directory);
+            return this;
+        }
+
+        /**
+         * Lets remote file watchers ask for patches from the current version instead of the full config,
+         * see {@link RemoteFileWatcher}.
+         */
+        public ConfigManagerBuilder withRemoteDeltas() {
+            this.remoteDeltas = true;
+            return this;
+        }
+
+        /**
+         * Receives config pushed from the url as Server-Sent Events on a dedicated thread, polling at the
+         * fallback interval while the event stream is disconnected. See {@link PushRemoteFileWatcher}.
+         */
+        public ConfigManagerBuilder withPushRemoteWatcher(String url, long fallbackInterval, TimeUnit unit) {
+            watchers.add(() -> {
+                PushRemoteFileWatcher watcher = new PushRemoteFileWatcher(url, configManager.sourceListener(ConfigLayer.REMOTE), parser,
+                        configManager.metrics, connectTimeoutMillis, PushRemoteFileWatcher.DEFAULT_IDLE_TIMEOUT_MILLIS, fallbackInterval, unit);
+                configManager.closeables.add(watcher);
+                Thread thread = new Thread(watcher, "config-push-watcher-" + url);
+                thread.setDaemon(true);
+                thread.start();
+            });
+            return this;
+        }
+
+        /**
+         * Connect and read timeouts of remote file watchers, 10 and 30 seconds by default.
+         */
+        public ConfigManagerBuilder withTimeouts(long connectTimeout, long readTimeout, TimeUnit unit) {
+            connectTimeoutMillis = (int) unit.toMillis(connectTimeout);
+            readTimeoutMillis = (int) unit.toMillis(readTimeout);
+            return this;
+        }
+
+        /**
+         * Varies the interval of polling watchers randomly by up to the given fraction of it, 0.1 by default.
+         */
+        public ConfigManagerBuilder withJitter(double jitter) {
+            if (jitter < 0 || jitter >= 1) {
+                throw new IllegalArgumentException(String.format("Jitter=%f must be at least 0 and less than 1", jitter));
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Number of threads polling watchers run on, by default one per polling watcher. Watchers run
+         * concurrently, configs read at the same time are published as one snapshot.
+         */
+        public ConfigManagerBuilder withSourceThreads(int threads) {
+            this.sourceThreads = threads;
+            return this;
+        }
+
+        /**
+         * Runs polling watchers on a scheduler shared with other config managers instead of creating a pool
+         * for this manager. The scheduler is not shut down by the config manager.
+         */
+        public ConfigManagerBuilder withScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Checks every config against the schema before it is published. A reloaded config which does not
+         * match is rejected and the last valid config stays published. Throws {@link ConfigException} if the
+         * config loaded so far, or loaded later by the builder, does not match.
+         */
+        public ConfigManagerBuilder withSchema(ConfigSchema schema) {
+            List<String> errors = schema.validate(configManager.snapshot, null);
+            if (!errors.isEmpty()) {
+                throw new ConfigException("Config does not match the schema: " + String.join(", ", errors));
+            }
+            configManager.schema = schema;
+            return this;
+        }
+
+        /**
+         * Caches values read by category and key in the given number of slots, so repeated reads of hot keys
+         * skip the key search and the decoding of {@link ConfigStorage#COMPACT} and {@link ConfigStorage#OFF_HEAP}
+         * values. The cache is invalidated by every published snapshot. It is not used with
+         * {@link ConfigStorage#HASH_MAP} storage, where a read is cheaper than a cache hit. Typed keys and
+         * bindings do not need it. Disabled by default.
+         */
+        public ConfigManagerBuilder withLookupCache(int size) {
+            configManager.lookupCache = new LookupCache(size);
+            return this;
+        }
+
+        /**
+         * Waits for the given time after a source changed before publishing, so sources changing many times
+         * within the window cost one parse per source and one publish. Disabled by default.
+         */
+        public ConfigManagerBuilder withReloadWindow(long window, TimeUnit unit) {
+            configManager.reloadWindowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        /**
+         * Publishes changes of sources at most once per interval, changes arriving sooner are published
+         * together when the interval has passed. Disabled by default.
+         */
+        public ConfigManagerBuilder withMinPublishInterval(long interval, TimeUnit unit) {
+            configManager.minPublishIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Lets config managers built with shared sources share polling watchers of the same file or url, so
+         * each change is read and parsed once for all of them. A shared watcher runs with the settings of the
+         * first manager using it, and is stopped when the last manager using it is closed.
+         */
+        public ConfigManagerBuilder withSharedSources() {
+            this.sharedSources = true;
+            return this;
+        }
+
+        private ConfigManagerBuilder withPollingSource(Supplier<String> key, ConfigLayer layer, Function<ConfigChangeListener, Runnable> source,
+                                                       long interval, TimeUnit unit) {
+            if (!sharedSources) {
+                pollingSources++;
+            }
+            watchers.add(() -> {
+                ConfigChangeListener listener = configManager.sourceListener(layer);
+                if (sharedSources) {
+                    String sharedKey = key.get() + "|" + unit.toMillis(interval);
+                    configManager.closeables.add(SharedSources.INSTANCE.acquire(sharedKey, source, interval, unit, jitter, listener));
+                } else {
+                    Runnable watcher = source.apply(listener);
+                    if (watcher instanceof Closeable) {
+                        configManager.closeables.add((Closeable) watcher);
+                    }
+                    new ScheduledSource(configManager.pool, watcher, interval, unit, jitter).start();
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Selects how compiled categories are stored, see {@link ConfigStorage}. A config that is already
+         * loaded is stored again. Defaults to {@link ConfigStorage#HASH_MAP}.
+         */
+        public ConfigManagerBuilder withStorage(ConfigStorage storage) {
+            configManager.storage = storage;
+            configManager.snapshot = configManager.snapshot.withStorage(storage);
             return this;
         }
 
         public ConfigManagerBuilder withDefaultCategory(String category) {
-            configManager.defaultCategory = Optional.of(category);
+            configManager.defaultCategory = category;
+            configManager.snapshot = configManager.snapshot.withDefaultCategory(category);
             return this;
         }
 
+        /**
+         * Returns the config manager and starts its watchers.
+         */
         public ConfigManager build() {
+            if (configManager.storage == ConfigStorage.HASH_MAP) {
+                configManager.lookupCache = null;
+            }
+            configManager.pool = scheduler != null ? scheduler : newPool(sourceThreads > 0 ? sourceThreads : Math.max(1, pollingSources));
+            configManager.ownsPool = scheduler == null;
+            for (Runnable watcher : watchers) {
+                watcher.run();
+            }
+            // Configs sources have already given, like cached remote configs, are loaded before the manager is
+            // returned, regardless of the reload window and publish interval
+            configManager.applyUpdates(true);
             return configManager;
         }
+
+        private static ScheduledExecutorService newPool(int threads) {
+            ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(threads);
+            pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            return pool;
+        }
     }
 
     public ExecutorService getPool() {
         return this.pool;
     }
 
+    /**
+     * Stops the watchers of this config manager and shuts down its pool, unless the pool was given with
+     * {@link ConfigManagerBuilder#withScheduler(ScheduledExecutorService)}. Shared sources are stopped when
+     * no other config manager uses them. The config stays readable after closing.
+     */
+    @Override
+    public void close() {
+        for (Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Unable to close config source", e);
+            }
+        }
+        closeables.clear();
+        for (ValuePublisher<?> publisher : publishers) {
+            publisher.complete();
+        }
+        if (ownsPool && pool != null) {
+            pool.shutdown();
+        }
+    }
+
 }
@@ -1,40 +1,248 @@
 package no.mehl.jconfig;
 
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import no.mehl.jconfig.metrics.ConfigMetrics;
 import no.mehl.jconfig.pojo.Config;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 /**
- * Utilities to read different types of files/paths
+ * Utilities to read different types of files/paths. Json is parsed as a stream of tokens, the
+ * document is never held in memory as a whole.
  */
 public class ConfigParser {
 
+    private final ConfigMetrics metrics;
+    private final boolean lazy;
+
+    public ConfigParser() {
+        this(ConfigMetrics.NOOP);
+    }
+
+    public ConfigParser(ConfigMetrics metrics) {
+        this(metrics, false);
+    }
+
+    /**
+     * Creates a parser which, if lazy, only finds where each category is in the document. Each category is
+     * parsed the first time it is read, and a snapshot reuses categories whose json has not changed without
+     * parsing them. Errors in the values of a category are thrown when the category is first read.
+     * Documents that can not be indexed, like json with comments, are parsed as a whole. Readers are
+     * always parsed as a whole.
+     */
+    public ConfigParser(ConfigMetrics metrics, boolean lazy) {
+        this.metrics = metrics;
+        this.lazy = lazy;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
     public Config parseJson(String json) {
-        try {
-            return new Gson().fromJson(json, Config.class);
-        } catch (Exception e) {
-            throw new ConfigException("Unable to parse json", e);
+        if (lazy) {
+            return parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
         }
+        return parse(new StringReader(json), json.length());
     }
 
     public Config parseFilePath(String path) {
-        try {
-            return parseFile(Paths.get(getClass().getClassLoader().getResource(path).toURI()));
-        } catch (URISyntaxException e) {
-            throw new ConfigException(String.format("Invalid URI for path=%s", path), e);
+        InputStream in = getClass().getClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new ConfigException(String.format("Unable to find resource for path=%s", path));
         }
+        return parse(in);
     }
 
     public Config parseFile(Path path) {
+        InputStream in;
         try {
-            return parseJson(new String(Files.readAllBytes(path)));
+            in = Files.newInputStream(path);
         } catch (IOException e) {
             throw new ConfigException(String.format("Unable to read config for path=%s", path), e);
         }
+        return parse(in);
+    }
+
+    public Config parse(ReadableByteChannel channel) {
+        return parse(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Parses UTF-8 encoded json from the stream, the stream is closed when done.
+     */
+    public Config parse(InputStream in) {
+        if (lazy) {
+            return parseLazy(in);
+        }
+        CountingInputStream counting = new CountingInputStream(in);
+        long start = System.nanoTime();
+        Config config = read(new InputStreamReader(counting, StandardCharsets.UTF_8));
+        metrics.parsed(counting.count, System.nanoTime() - start);
+        return config;
+    }
+
+    private Config parseLazy(InputStream in) {
+        long start = System.nanoTime();
+        byte[] json;
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            json = out.toByteArray();
+        } catch (IOException e) {
+            throw new ConfigException("Unable to parse json", e);
+        }
+        Config config = LazyJsonIndex.index(json);
+        if (config == null) {
+            config = read(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+        }
+        metrics.parsed(json.length, System.nanoTime() - start);
+        return config;
+    }
+
+    /**
+     * Parses json from the reader, the reader is closed when done. Returns null for an empty document.
+     */
+    public Config parse(Reader reader) {
+        return parse(reader, -1);
+    }
+
+    private Config parse(Reader reader, long chars) {
+        long start = System.nanoTime();
+        Config config = read(reader);
+        metrics.parsed(chars, System.nanoTime() - start);
+        return config;
+    }
+
+    /**
+     * Applies a JSON Merge Patch (RFC 7386) read from the stream to a config, and returns the patched config.
+     * The given config is not changed, categories the patch does not touch are shared with it.
+     */
+    public Config applyMergePatch(Config config, InputStream patch) {
+        return ConfigPatch.mergePatch(config, readPatch(patch));
+    }
+
+    /**
+     * Applies a JSON Patch (RFC 6902) read from the stream to a config, and returns the patched config.
+     * Only add, replace, remove and test of categories and keys are supported.
+     */
+    public Config applyJsonPatch(Config config, InputStream patch) {
+        return ConfigPatch.jsonPatch(config, readPatch(patch));
+    }
+
+    private Object readPatch(InputStream patch) {
+        CountingInputStream counting = new CountingInputStream(patch);
+        long start = System.nanoTime();
+        try (JsonReader in = new JsonReader(new InputStreamReader(counting, StandardCharsets.UTF_8))) {
+            in.setLenient(true);
+            Object value = ConfigTypeAdapter.INSTANCE.readValue(in);
+            metrics.parsed(counting.count, System.nanoTime() - start);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            throw new ConfigException("Unable to parse json patch", e);
+        }
+    }
+
+    /**
+     * Writes a config as json.
+     */
+    public String toJson(Config config) {
+        StringWriter writer = new StringWriter();
+        try (JsonWriter out = new JsonWriter(writer)) {
+            ConfigTypeAdapter.INSTANCE.write(out, config);
+        } catch (IOException | RuntimeException e) {
+            throw new ConfigException("Unable to write json", e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Reads a config written by {@link #writeBinary(Config, Path)}.
+     */
+    public Config parseBinary(Path path) {
+        long start = System.nanoTime();
+        Config config = BinaryConfig.read(path);
+        metrics.parsed(path.toFile().length(), System.nanoTime() - start);
+        return config;
+    }
+
+    /**
+     * Writes a config in a compact binary form which can be memory mapped at startup, see
+     * {@link ConfigManager.ConfigManagerBuilder#withBinaryFile(String)}.
+     */
+    public void writeBinary(Config config, Path path) {
+        BinaryConfig.write(config, path);
+    }
+
+    private Config read(Reader reader) {
+        try (JsonReader in = new JsonReader(reader)) {
+            in.setLenient(true);
+            if (isEmpty(in)) {
+                return null;
+            }
+            Config config = ConfigTypeAdapter.INSTANCE.read(in);
+            if (in.peek() != JsonToken.END_DOCUMENT) {
+                throw new ConfigException("Unable to parse json, document was not fully consumed");
+            }
+            return config;
+        } catch (ConfigException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ConfigException("Unable to parse json", e);
+        }
+    }
+
+    private boolean isEmpty(JsonReader in) throws IOException {
+        try {
+            return in.peek() == JsonToken.END_DOCUMENT;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
     }
 }
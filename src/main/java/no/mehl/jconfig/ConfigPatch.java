@@ -0,0 +1,208 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Applies patches to a config without changing it. The patched config shares every category the patch
+ * does not touch with the original, so unchanged categories are reused when the config is compiled.
+ *
+ * Supports JSON Merge Patch (RFC 7386), and the add, replace, remove and test operations of JSON Patch
+ * (RFC 6902) on categories and keys. Other operations and deeper paths throw {@link ConfigException}.
+ */
+final class ConfigPatch {
+
+    private ConfigPatch() {
+    }
+
+    static Config mergePatch(Config config, Object patch) {
+        if (!(patch instanceof Map)) {
+            throw new ConfigException("Merge patch of a config must be an object");
+        }
+        Config patched = copy(config);
+        for (Map.Entry<?, ?> category : ((Map<?, ?>) patch).entrySet()) {
+            String name = String.valueOf(category.getKey());
+            if (category.getValue() == null) {
+                patched.remove(name);
+            } else if (category.getValue() instanceof Map) {
+                Category values = copy(patched.get(name));
+                for (Map.Entry<?, ?> value : ((Map<?, ?>) category.getValue()).entrySet()) {
+                    String key = String.valueOf(value.getKey());
+                    if (value.getValue() == null) {
+                        values.remove(key);
+                    } else {
+                        values.put(key, mergeValue(values.get(key), value.getValue()));
+                    }
+                }
+                patched.put(name, values);
+            } else {
+                throw new ConfigException(String.format("Merge patch of category=%s must be an object or null", name));
+            }
+        }
+        return patched;
+    }
+
+    private static Object mergeValue(Object target, Object patch) {
+        if (!(patch instanceof Map)) {
+            return patch;
+        }
+        Map<String, Object> merged = new LinkedHashMap<>();
+        if (target instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) target).entrySet()) {
+                merged.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) patch).entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            if (entry.getValue() == null) {
+                merged.remove(key);
+            } else {
+                merged.put(key, mergeValue(merged.get(key), entry.getValue()));
+            }
+        }
+        return merged;
+    }
+
+    static Config jsonPatch(Config config, Object patch) {
+        if (!(patch instanceof List)) {
+            throw new ConfigException("JSON patch must be an array of operations");
+        }
+        Config patched = copy(config);
+        Set<Category> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object operation : (List<?>) patch) {
+            if (!(operation instanceof Map)) {
+                throw new ConfigException("JSON patch operation must be an object");
+            }
+            apply(patched, (Map<?, ?>) operation, copied);
+        }
+        return patched;
+    }
+
+    private static void apply(Config config, Map<?, ?> operation, Set<Category> copied) {
+        String op = String.valueOf(operation.get("op"));
+        String[] path = path(String.valueOf(operation.get("path")));
+        Object value = operation.get("value");
+        String name = path[0];
+        if (path.length == 1) {
+            switch (op) {
+                case "add":
+                case "replace":
+                    if (!(value instanceof Map)) {
+                        throw new ConfigException(String.format("Value of category=%s must be an object", name));
+                    }
+                    requireExisting(op, config.containsKey(name), operation);
+                    Category category = new Category();
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        category.put(String.valueOf(entry.getKey()), entry.getValue());
+                    }
+                    config.put(name, category);
+                    copied.add(category);
+                    return;
+                case "remove":
+                    requireExisting(op, config.containsKey(name), operation);
+                    config.remove(name);
+                    return;
+                case "test":
+                    test(config.get(name), value, operation);
+                    return;
+                default:
+                    throw unsupported(operation);
+            }
+        }
+        Category values = config.get(name);
+        if (values == null) {
+            throw new ConfigException(String.format("Category=%s of patch operation %s does not exist", name, operation));
+        }
+        String key = path[1];
+        switch (op) {
+            case "add":
+            case "replace":
+                requireExisting(op, values.containsKey(key), operation);
+                writable(config, name, copied).put(key, value);
+                return;
+            case "remove":
+                requireExisting(op, values.containsKey(key), operation);
+                writable(config, name, copied).remove(key);
+                return;
+            case "test":
+                test(values.get(key), value, operation);
+                return;
+            default:
+                throw unsupported(operation);
+        }
+    }
+
+    /**
+     * Returns a category of the patched config which may be changed, copying it the first time.
+     */
+    private static Category writable(Config config, String name, Set<Category> copied) {
+        Category category = config.get(name);
+        if (!copied.contains(category)) {
+            category = copy(category);
+            config.put(name, category);
+            copied.add(category);
+        }
+        return category;
+    }
+
+    /**
+     * Replace and remove require the target to exist, add does not.
+     */
+    private static void requireExisting(String op, boolean exists, Map<?, ?> operation) {
+        if (!op.equals("add") && !exists) {
+            throw new ConfigException(String.format("Target of patch operation %s does not exist", operation));
+        }
+    }
+
+    private static void test(Object actual, Object expected, Map<?, ?> operation) {
+        if (!Objects.equals(actual, expected)) {
+            throw new ConfigException(String.format("Patch operation %s failed, value was %s", operation, actual));
+        }
+    }
+
+    private static ConfigException unsupported(Map<?, ?> operation) {
+        return new ConfigException(String.format("Unsupported patch operation %s", operation));
+    }
+
+    /**
+     * Splits a JSON pointer to a category or a key in a category.
+     */
+    private static String[] path(String pointer) {
+        String[] parts = pointer.split("/", -1);
+        if (!pointer.startsWith("/") || parts.length < 2 || parts.length > 3) {
+            throw new ConfigException(String.format("Unsupported patch path=%s", pointer));
+        }
+        String[] path = new String[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            path[i - 1] = parts[i].replace("~1", "/").replace("~0", "~");
+        }
+        return path;
+    }
+
+    private static Config copy(Config config) {
+        Config copy = new Config();
+        if (config != null) {
+            copy.putAll(config);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies a category before it is changed, the category may be shared with other configs.
+     */
+    private static Category copy(Category category) {
+        Category copy = new Category();
+        if (category != null) {
+            copy.putAll(category);
+        }
+        return copy;
+    }
+}
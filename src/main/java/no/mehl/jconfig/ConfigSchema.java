@@ -0,0 +1,214 @@
+package no.mehl.jconfig;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Types, ranges and required keys of a config, checked by {@link ConfigManager} before a reloaded config is
+ * published. A config which does not match the schema is rejected and the last valid config stays published,
+ * so type errors are found when the config changes instead of when a value is read.
+ *
+ * Keys not in the schema are not checked. Categories of a snapshot reused from the previous one are not
+ * checked again.
+ */
+public final class ConfigSchema {
+
+    private final Map<String, Rule[]> categories;
+    private final Set<String> requiredCategories;
+
+    private ConfigSchema(Map<String, Rule[]> categories, Set<String> requiredCategories) {
+        this.categories = categories;
+        this.requiredCategories = requiredCategories;
+    }
+
+    /**
+     * Returns the errors of a snapshot, or an empty list if it matches the schema. Categories which are the
+     * same instance in the previous snapshot were already checked and are skipped.
+     */
+    List<String> validate(ConfigSnapshot snapshot, ConfigSnapshot previous) {
+        List<String> errors = new ArrayList<>();
+        if (!snapshot.isLoaded()) {
+            return errors;
+        }
+        for (Map.Entry<String, Rule[]> category : categories.entrySet()) {
+            Map<String, ConfigValue> values = snapshot.categories().get(category.getKey());
+            if (values == null) {
+                if (requiredCategories.contains(category.getKey())) {
+                    errors.add(String.format("Category %s is missing", category.getKey()));
+                }
+                continue;
+            }
+            if (previous != null && previous.isLoaded() && values == previous.categories().get(category.getKey())) {
+                continue;
+            }
+            for (Rule rule : category.getValue()) {
+                String error = rule.check(values.get(rule.key));
+                if (error != null) {
+                    errors.add(String.format("%s.%s: %s", category.getKey(), rule.key, error));
+                }
+            }
+        }
+        return errors;
+    }
+
+    private enum Type {
+        STRING, INT, LONG, DOUBLE, STRING_LIST, INT_LIST, DOUBLE_LIST
+    }
+
+    private static final class Rule {
+        private final String key;
+        private final Type type;
+        private final boolean required;
+        private final double min;
+        private final double max;
+
+        private Rule(String key, Type type, boolean required, double min, double max) {
+            this.key = key;
+            this.type = type;
+            this.required = required;
+            this.min = min;
+            this.max = max;
+        }
+
+        private String check(ConfigValue value) {
+            if (value == null || value.raw() == null) {
+                return required ? "required key is missing" : null;
+            }
+            try {
+                switch (type) {
+                    case STRING:
+                        value.getString();
+                        return null;
+                    case INT:
+                        return checkNumber(value.getDouble(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+                    case LONG:
+                        return checkNumber(value.getDouble(), Long.MIN_VALUE, Long.MAX_VALUE);
+                    case DOUBLE:
+                        return checkNumber(value.getDouble(), Double.NaN, Double.NaN);
+                    case STRING_LIST:
+                        value.getStringList();
+                        return null;
+                    case INT_LIST:
+                        for (Integer element : value.getIntList()) {
+                            String error = checkNumber(element, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                            if (error != null) {
+                                return error;
+                            }
+                        }
+                        return null;
+                    default:
+                        for (Double element : value.getDoubleList()) {
+                            String error = element == null ? "null in list of doubles" : checkNumber(element, Double.NaN, Double.NaN);
+                            if (error != null) {
+                                return error;
+                            }
+                        }
+                        return null;
+                }
+            } catch (ConfigException e) {
+                return e.getMessage();
+            }
+        }
+
+        /**
+         * Checks that a number is within the range of the rule, and an integer within the given bounds if the
+         * bounds are not NaN.
+         */
+        private String checkNumber(double number, double lowest, double highest) {
+            if (!Double.isNaN(lowest) && (number != Math.floor(number) || number < lowest || number > highest)) {
+                return String.format("value=%s is not %s", number, type == Type.LONG ? "a long" : "an integer");
+            }
+            if (number < min || number > max) {
+                return String.format("value=%s is not between %s and %s", number, min, max);
+            }
+            return null;
+        }
+    }
+
+    public static class ConfigSchemaBuilder {
+
+        private final Map<String, List<Rule>> categories = new LinkedHashMap<>();
+        private final Set<String> requiredCategories = new LinkedHashSet<>();
+
+        /**
+         * Rejects configs without the category, a category with a required key is required as well.
+         */
+        public ConfigSchemaBuilder requireCategory(String category) {
+            requiredCategories.add(category);
+            categories.computeIfAbsent(category, c -> new ArrayList<>());
+            return this;
+        }
+
+        public ConfigSchemaBuilder withString(String category, String key, boolean required) {
+            return add(category, key, Type.STRING, required, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        public ConfigSchemaBuilder withInt(String category, String key, boolean required) {
+            return add(category, key, Type.INT, required, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * An integer from min to max, both inclusive.
+         */
+        public ConfigSchemaBuilder withInt(String category, String key, boolean required, int min, int max) {
+            return add(category, key, Type.INT, required, min, max);
+        }
+
+        public ConfigSchemaBuilder withLong(String category, String key, boolean required) {
+            return add(category, key, Type.LONG, required, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        public ConfigSchemaBuilder withLong(String category, String key, boolean required, long min, long max) {
+            return add(category, key, Type.LONG, required, min, max);
+        }
+
+        public ConfigSchemaBuilder withDouble(String category, String key, boolean required) {
+            return add(category, key, Type.DOUBLE, required, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        public ConfigSchemaBuilder withDouble(String category, String key, boolean required, double min, double max) {
+            return add(category, key, Type.DOUBLE, required, min, max);
+        }
+
+        public ConfigSchemaBuilder withStringList(String category, String key, boolean required) {
+            return add(category, key, Type.STRING_LIST, required, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * A list of integers, each from min to max.
+         */
+        public ConfigSchemaBuilder withIntList(String category, String key, boolean required, int min, int max) {
+            return add(category, key, Type.INT_LIST, required, min, max);
+        }
+
+        /**
+         * A list of doubles, each from min to max.
+         */
+        public ConfigSchemaBuilder withDoubleList(String category, String key, boolean required, double min, double max) {
+            return add(category, key, Type.DOUBLE_LIST, required, min, max);
+        }
+
+        private ConfigSchemaBuilder add(String category, String key, Type type, boolean required, double min, double max) {
+            if (min > max) {
+                throw new IllegalArgumentException(String.format("Min=%s of key=%s is greater than max=%s", min, key, max));
+            }
+            categories.computeIfAbsent(category, c -> new ArrayList<>()).add(new Rule(key, type, required, min, max));
+            if (required) {
+                requiredCategories.add(category);
+            }
+            return this;
+        }
+
+        public ConfigSchema build() {
+            Map<String, Rule[]> compiled = new LinkedHashMap<>(categories.size() * 2);
+            for (Map.Entry<String, List<Rule>> category : categories.entrySet()) {
+                compiled.put(category.getKey(), category.getValue().toArray(new Rule[0]));
+            }
+            return new ConfigSchema(compiled, new LinkedHashSet<>(requiredCategories));
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, compiled form of a {@link Config}. Every value is converted to its typed forms when the
+ * snapshot is created, so getters only do the map lookups.
+ *
+ * A snapshot never changes after it is published, so several values read from the same snapshot are
+ * always from the same version of the config. Use {@link ConfigManager#snapshot()} to get the current one.
+ *
+ * Keys of each category are sorted when it is compiled, so a category can be scanned by key range or prefix.
+ * Categories compiled on first read are sorted on their first scan.
+ */
+public final class ConfigSnapshot {
+
+    private static final AtomicLong versions = new AtomicLong();
+    private static final ConfigValue NOT_LOADED = ConfigValue.missing("No config loaded, unable to get value");
+
+    static final ConfigSnapshot EMPTY = new ConfigSnapshot(Collections.emptyMap(), false, null, 0);
+
+    private final Map<String, Map<String, ConfigValue>> categories;
+    private final boolean loaded;
+    private final String defaultCategory;
+    private final long version;
+    private final long createdAtMillis;
+    private final Map<String, KeyIndex> indexes;
+
+    private ConfigSnapshot(Map<String, Map<String, ConfigValue>> categories, boolean loaded, String defaultCategory, long version) {
+        this(categories, loaded, defaultCategory, version, System.currentTimeMillis(), new ConcurrentHashMap<>());
+    }
+
+    private ConfigSnapshot(Map<String, Map<String, ConfigValue>> categories, boolean loaded, String defaultCategory, long version,
+                           long createdAtMillis, Map<String, KeyIndex> indexes) {
+        this.categories = categories;
+        this.loaded = loaded;
+        this.defaultCategory = defaultCategory;
+        this.version = version;
+        this.createdAtMillis = createdAtMillis;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Compiles a config into a snapshot, an empty snapshot is returned for a null config.
+     */
+    static ConfigSnapshot compile(Config config, String defaultCategory) {
+        return compile(config, defaultCategory, EMPTY);
+    }
+
+    /**
+     * Compiles a config into a snapshot, reusing compiled values and categories of the previous snapshot
+     * that are unchanged. A reused category is the same instance in both snapshots.
+     */
+    static ConfigSnapshot compile(Config config, String defaultCategory, ConfigSnapshot previous) {
+        return compile(config, defaultCategory, previous, ConfigStorage.HASH_MAP);
+    }
+
+    /**
+     * Compiles a config into a snapshot with categories stored as given, reusing unchanged categories
+     * of the previous snapshot.
+     */
+    static ConfigSnapshot compile(Config config, String defaultCategory, ConfigSnapshot previous, ConfigStorage storage) {
+        if (config == null) {
+            return EMPTY.withDefaultCategory(defaultCategory);
+        }
+        Map<String, Map<String, ConfigValue>> categories = new HashMap<>(config.size() * 2);
+        Map<String, KeyIndex> indexes = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Category> category : config.entrySet()) {
+            if (category.getValue() == null) {
+                continue;
+            }
+            Map<String, ConfigValue> compiled = compileCategory(category.getValue(), previous.categories.get(category.getKey()), storage);
+            categories.put(category.getKey(), compiled);
+            KeyIndex index = previous.indexes.get(category.getKey());
+            if (index != null && index.isFor(compiled)) {
+                indexes.put(category.getKey(), index);
+            } else if (!(compiled instanceof LazyCategory)) {
+                indexes.put(category.getKey(), new KeyIndex(compiled));
+            }
+        }
+        return new ConfigSnapshot(categories, true, defaultCategory, versions.incrementAndGet(), System.currentTimeMillis(), indexes);
+    }
+
+    /**
+     * Compiles a category. A category parsed lazily is the previous compiled category if its json has not
+     * changed. If the previous category has been read, the changed json is compiled now, so json which can not
+     * be parsed fails the reload and the previous category stays published. New categories and categories not
+     * read yet are compiled on first read. A lazily parsed category which has been changed is compiled now.
+     */
+    private static Map<String, ConfigValue> compileCategory(Category category, Map<String, ConfigValue> previous, ConfigStorage storage) {
+        byte[] hash = category instanceof RawCategory ? ((RawCategory) category).getHash() : null;
+        if (hash == null) {
+            return storage.compile(category, previous);
+        }
+        if (previous instanceof LazyCategory) {
+            LazyCategory lazy = (LazyCategory) previous;
+            if (Arrays.equals(hash, lazy.getSourceHash())) {
+                return previous;
+            }
+            if (!lazy.isDecoded()) {
+                return new LazyCategory(() -> storage.compile(category, null), hash);
+            }
+        } else if (previous == null) {
+            return new LazyCategory(() -> storage.compile(category, null), hash);
+        }
+        return new LazyCategory(storage.compile(category, null), hash);
+    }
+
+    /**
+     * Creates a snapshot from already compiled categories, which may be decoded lazily.
+     */
+    static ConfigSnapshot of(Map<String, Map<String, ConfigValue>> categories, String defaultCategory) {
+        return new ConfigSnapshot(categories, true, defaultCategory, versions.incrementAndGet());
+    }
+
+    /**
+     * Returns a snapshot with the same values as this one, with categories stored as given.
+     */
+    ConfigSnapshot withStorage(ConfigStorage storage) {
+        if (!loaded) {
+            return this;
+        }
+        Map<String, Map<String, ConfigValue>> stored = new HashMap<>(categories.size() * 2);
+        for (Map.Entry<String, Map<String, ConfigValue>> category : categories.entrySet()) {
+            Category raw = new Category();
+            for (Map.Entry<String, ConfigValue> value : category.getValue().entrySet()) {
+                raw.put(value.getKey(), value.getValue().raw());
+            }
+            stored.put(category.getKey(), storage.compile(raw, null));
+        }
+        return new ConfigSnapshot(stored, true, defaultCategory, versions.incrementAndGet());
+    }
+
+    /**
+     * Returns a snapshot sharing the compiled values of this one, with another default category.
+     */
+    ConfigSnapshot withDefaultCategory(String category) {
+        return new ConfigSnapshot(categories, loaded, category, version, createdAtMillis, indexes);
+    }
+
+    /**
+     * Version of this snapshot, a snapshot compiled later always has a higher version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Time this snapshot was compiled, in milliseconds since the epoch.
+     */
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public String getDefaultCategory() {
+        return defaultCategory;
+    }
+
+    public String getString(String key) {
+        return getString(defaultCategory, key);
+    }
+
+    public int getInt(String key) {
+        return getInt(defaultCategory, key);
+    }
+
+    public long getLong(String key) {
+        return getLong(defaultCategory, key);
+    }
+
+    public double getDouble(String key) {
+        return getDouble(defaultCategory, key);
+    }
+
+    public List<String> getStringList(String key) {
+        return getStringList(defaultCategory, key);
+    }
+
+    public List<Integer> getIntList(String key) {
+        return getIntList(defaultCategory, key);
+    }
+
+    public List<Double> getDoubleList(String key) {
+        return getDoubleList(defaultCategory, key);
+    }
+
+    public String getString(String category, String key) {
+        return getValue(category, key).getString();
+    }
+
+    public int getInt(String category, String key) {
+        return getValue(category, key).getInt();
+    }
+
+    public long getLong(String category, String key) {
+        return getValue(category, key).getLong();
+    }
+
+    public double getDouble(String category, String key) {
+        return getValue(category, key).getDouble();
+    }
+
+    public List<String> getStringList(String category, String key) {
+        return getValue(category, key).getStringList();
+    }
+
+    public List<Integer> getIntList(String category, String key) {
+        return getValue(category, key).getIntList();
+    }
+
+    public List<Double> getDoubleList(String category, String key) {
+        return getValue(category, key).getDoubleList();
+    }
+
+    /**
+     * Returns a read-only view of a category, iterating in key order. Lists and maps in the view, and the lists
+     * and maps they contain, can not be modified either. Throws {@link ConfigException} if the category does
+     * not exist.
+     */
+    public Map<String, Object> getCategory(String category) {
+        return index(category).all();
+    }
+
+    /**
+     * Returns the values of the given keys of a category in one lookup of the category, keys without a value
+     * are left out.
+     */
+    public Map<String, Object> getValues(String category, String... keys) {
+        Map<String, ConfigValue> values = compiledCategory(category);
+        Map<String, Object> result = new LinkedHashMap<>(keys.length * 2);
+        for (String key : keys) {
+            ConfigValue value = values.get(key);
+            if (value != null && value.raw() != null) {
+                result.put(key, KeyIndex.view(value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a read-only view of the keys of a category starting with the prefix, iterating in key order.
+     */
+    public Map<String, Object> getPrefix(String category, String prefix) {
+        return index(category).prefix(prefix);
+    }
+
+    /**
+     * Returns a read-only view of the keys of a category from the first key inclusive to the last key
+     * exclusive, iterating in key order. A null key leaves the range unbounded at that end.
+     */
+    public Map<String, Object> getRange(String category, String fromKey, String toKey) {
+        return index(category).range(fromKey, toKey);
+    }
+
+    private KeyIndex index(String category) {
+        KeyIndex index = indexes.get(category);
+        if (index == null) {
+            Map<String, ConfigValue> values = compiledCategory(category);
+            index = indexes.computeIfAbsent(category, name -> new KeyIndex(values));
+        }
+        return index;
+    }
+
+    private Map<String, ConfigValue> compiledCategory(String category) {
+        if (!loaded) {
+            throw new ConfigException("No config loaded, unable to get value");
+        }
+        Map<String, ConfigValue> values = categories.get(category);
+        if (values == null) {
+            throw new ConfigException(String.format("Category %s does not exist", category));
+        }
+        return values;
+    }
+
+    Map<String, Map<String, ConfigValue>> categories() {
+        return categories;
+    }
+
+    /**
+     * Returns the compiled value for a key. Missing config, categories and keys are returned as values
+     * which throw a {@link ConfigException} when read.
+     */
+    ConfigValue getValue(String category, String key) {
+        if (!loaded) {
+            return NOT_LOADED;
+        }
+        Map<String, ConfigValue> values = categories.get(category);
+        if (values == null) {
+            return ConfigValue.missing(String.format("Category %s does not exist", category));
+        }
+        ConfigValue value = values.get(key);
+        return value == null ? ConfigValue.NULL : value;
+    }
+}
@@ -0,0 +1,76 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Category;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * How the categories of a compiled {@link ConfigSnapshot} are stored, selected with
+ * {@link ConfigManager.ConfigManagerBuilder#withStorage(ConfigStorage)}.
+ */
+public enum ConfigStorage {
+
+    /**
+     * Every value is compiled to all its typed forms up front. Fastest reads, most memory per entry.
+     */
+    HASH_MAP {
+        @Override
+        Map<String, ConfigValue> compile(Category category, Map<String, ConfigValue> previous) {
+            boolean unchanged = previous != null && previous.size() == category.size();
+            Map<String, ConfigValue> values = new HashMap<>(category.size() * 2);
+            for (Map.Entry<String, Object> value : category.entrySet()) {
+                ConfigValue old = previous != null ? previous.get(value.getKey()) : null;
+                if (old != null && Objects.equals(old.raw(), value.getValue())) {
+                    values.put(value.getKey(), old);
+                } else {
+                    values.put(value.getKey(), ConfigValue.of(value.getValue()));
+                    unchanged = false;
+                }
+            }
+            return unchanged ? previous : values;
+        }
+    },
+
+    /**
+     * Keys are interned and kept in a sorted array, numbers and booleans are stored unboxed in a byte
+     * buffer and strings are interned. Made for categories with very many entries. Reads do a binary
+     * search and create the typed value, lists and maps are compiled up front as with {@link #HASH_MAP}.
+     */
+    COMPACT {
+        @Override
+        Map<String, ConfigValue> compile(Category category, Map<String, ConfigValue> previous) {
+            return unchanged(category, previous) ? previous : CompactCategory.of(category, false);
+        }
+    },
+
+    /**
+     * Like {@link #COMPACT}, with numbers and booleans stored in a direct buffer outside the heap. The
+     * memory is released when the snapshot is garbage collected, and is limited by -XX:MaxDirectMemorySize.
+     */
+    OFF_HEAP {
+        @Override
+        Map<String, ConfigValue> compile(Category category, Map<String, ConfigValue> previous) {
+            return unchanged(category, previous) ? previous : CompactCategory.of(category, true);
+        }
+    };
+
+    /**
+     * Compiles a category, returning the previous compiled category if it is stored the same way and unchanged.
+     */
+    abstract Map<String, ConfigValue> compile(Category category, Map<String, ConfigValue> previous);
+
+    private static boolean unchanged(Category category, Map<String, ConfigValue> previous) {
+        if (!(previous instanceof CompactCategory) || previous.size() != category.size()) {
+            return false;
+        }
+        CompactCategory compact = (CompactCategory) previous;
+        for (Map.Entry<String, Object> value : category.entrySet()) {
+            if (!compact.containsKey(value.getKey()) || !Objects.equals(compact.raw(value.getKey()), value.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
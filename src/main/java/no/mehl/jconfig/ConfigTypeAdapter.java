@@ -0,0 +1,144 @@
+package no.mehl.jconfig;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token level reader and writer for {@link Config}. Builds the config directly from the json tokens,
+ * with the same value types as Gson's reflective binding: strings, doubles, booleans, lists and maps.
+ * The adapter is stateless and shared.
+ */
+final class ConfigTypeAdapter extends TypeAdapter<Config> {
+
+    static final ConfigTypeAdapter INSTANCE = new ConfigTypeAdapter();
+
+    private ConfigTypeAdapter() {
+    }
+
+    @Override
+    public Config read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Config config = new Config();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (config.containsKey(name)) {
+                throw new IOException(String.format("Duplicate category=%s", name));
+            }
+            config.put(name, readCategory(in));
+        }
+        in.endObject();
+        return config;
+    }
+
+    private Category readCategory(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Category category = new Category();
+        readCategory(in, category);
+        return category;
+    }
+
+    /**
+     * Reads the values of a category object into the given map.
+     */
+    void readCategory(JsonReader in, Map<String, Object> category) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (category.containsKey(name)) {
+                throw new IOException(String.format("Duplicate key=%s", name));
+            }
+            category.put(name, readValue(in));
+        }
+        in.endObject();
+    }
+
+    Object readValue(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case STRING:
+                return in.nextString();
+            case NUMBER:
+                return in.nextDouble();
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NULL:
+                in.nextNull();
+                return null;
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(readValue(in));
+                }
+                in.endArray();
+                return list;
+            case BEGIN_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    map.put(in.nextName(), readValue(in));
+                }
+                in.endObject();
+                return map;
+            default:
+                throw new IOException(String.format("Unexpected token=%s at %s", in.peek(), in.getPath()));
+        }
+    }
+
+    @Override
+    public void write(JsonWriter out, Config config) throws IOException {
+        if (config == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (Map.Entry<String, Category> category : config.entrySet()) {
+            out.name(category.getKey());
+            writeValue(out, category.getValue());
+        }
+        out.endObject();
+    }
+
+    private void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else if (value instanceof Boolean) {
+            out.value((Boolean) value);
+        } else if (value instanceof List) {
+            out.beginArray();
+            for (Object o : (List<?>) value) {
+                writeValue(out, o);
+            }
+            out.endArray();
+        } else if (value instanceof Map) {
+            out.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                out.name(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+            out.endObject();
+        } else {
+            throw new IOException(String.format("Unable to write value=%s of type %s", value, value.getClass()));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package no.mehl.jconfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single config value, converted once to every typed form it supports so that reads never
+ * allocate or re-validate. Conversions that are not possible are thrown as {@link ConfigException}
+ * when the typed form is requested, cast error messages are only formatted then.
+ */
+final class ConfigValue {
+
+    static final ConfigValue NULL = missing("Value was null");
+
+    private final Object raw;
+    private final String missingError;
+
+    private final String stringValue;
+    private final boolean numeric;
+    private final double doubleValue;
+    private final long longValue;
+    private final int intValue;
+
+    private final List<String> stringList;
+    private final List<Double> doubleList;
+    private final List<Integer> intList;
+    private final String stringListError;
+    private final String doubleListError;
+    private final String intListError;
+
+    private ConfigValue(Object raw, String missingError) {
+        this.raw = raw;
+        this.missingError = missingError;
+        this.stringValue = raw instanceof String ? (String) raw : null;
+        this.numeric = raw instanceof Double;
+        this.doubleValue = numeric ? (Double) raw : 0;
+        this.longValue = (long) doubleValue;
+        this.intValue = (int) doubleValue;
+
+        List<String> strings = null;
+        List<Double> doubles = null;
+        List<Integer> ints = null;
+        String stringsError = null;
+        String doublesError = null;
+        String intsError = null;
+        if (raw instanceof List) {
+            List<?> list = (List<?>) raw;
+            strings = toStringList(list);
+            if (strings == null) {
+                stringsError = "Unable to create list of strings";
+            }
+            doubles = toDoubleList(list);
+            if (doubles == null) {
+                doublesError = "Unable to create list of integers";
+                intsError = doublesError;
+            } else {
+                intsError = firstNonInteger(doubles);
+                if (intsError == null) {
+                    ints = toIntList(doubles);
+                }
+            }
+        }
+        this.stringList = strings;
+        this.doubleList = doubles;
+        this.intList = ints;
+        this.stringListError = stringsError;
+        this.doubleListError = doublesError;
+        this.intListError = intsError;
+    }
+
+    static ConfigValue of(Object raw) {
+        return raw == null ? NULL : new ConfigValue(raw, null);
+    }
+
+    /**
+     * Returns a value which throws a {@link ConfigException} with the given message for every typed read.
+     */
+    static ConfigValue missing(String message) {
+        return new ConfigValue(null, message);
+    }
+
+    /**
+     * Returns true if the config, category or key of this value does not exist, or the value is null.
+     */
+    boolean isMissing() {
+        return missingError != null;
+    }
+
+    Object raw() {
+        return raw;
+    }
+
+    String getString() {
+        if (stringValue == null) {
+            throw typeError();
+        }
+        return stringValue;
+    }
+
+    double getDouble() {
+        if (!numeric) {
+            throw typeError();
+        }
+        return doubleValue;
+    }
+
+    long getLong() {
+        if (!numeric) {
+            throw typeError();
+        }
+        return longValue;
+    }
+
+    int getInt() {
+        if (!numeric) {
+            throw typeError();
+        }
+        return intValue;
+    }
+
+    List<String> getStringList() {
+        return listOrThrow(stringList, stringListError);
+    }
+
+    List<Double> getDoubleList() {
+        return listOrThrow(doubleList, doubleListError);
+    }
+
+    List<Integer> getIntList() {
+        return listOrThrow(intList, intListError);
+    }
+
+    private <T> List<T> listOrThrow(List<T> list, String error) {
+        if (missingError != null) {
+            throw new ConfigException(missingError);
+        }
+        if (list == null) {
+            throw new ConfigException(error != null ? error : castError(raw));
+        }
+        return list;
+    }
+
+    private ConfigException typeError() {
+        if (missingError != null) {
+            return new ConfigException(missingError);
+        }
+        return new ConfigException(castError(raw));
+    }
+
+    private static String castError(Object value) {
+        return String.format("Unable to cast value=%s of type %s", value, value.getClass());
+    }
+
+    private static List<String> toStringList(List<?> list) {
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object o : list) {
+            if (o != null && !(o instanceof String)) {
+                return null;
+            }
+            strings.add((String) o);
+        }
+        return Collections.unmodifiableList(strings);
+    }
+
+    private static List<Double> toDoubleList(List<?> list) {
+        List<Double> doubles = new ArrayList<>(list.size());
+        for (Object o : list) {
+            if (o != null && !(o instanceof Double)) {
+                return null;
+            }
+            doubles.add((Double) o);
+        }
+        return Collections.unmodifiableList(doubles);
+    }
+
+    private static String firstNonInteger(List<Double> doubles) {
+        for (Double d : doubles) {
+            if (d == null) {
+                return "Value=null is not an integer";
+            }
+            if (d != Math.floor(d) || Double.isInfinite(d)) {
+                return String.format("Value=%f is not an integer", d);
+            }
+        }
+        return null;
+    }
+
+    private static List<Integer> toIntList(List<Double> doubles) {
+        List<Integer> ints = new ArrayList<>(doubles.size());
+        for (Double d : doubles) {
+            ints.add(d.intValue());
+        }
+        return Collections.unmodifiableList(ints);
+    }
+}
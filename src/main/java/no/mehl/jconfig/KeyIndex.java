@@ -0,0 +1,233 @@
+package no.mehl.jconfig;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Sorted keys of a compiled category, for range and prefix scans. Scans return read-only views of the
+ * category which iterate in key order, values are read from the category when accessed.
+ */
+final class KeyIndex {
+
+    private final Map<String, ConfigValue> category;
+    private final String[] keys;
+    private final Map<String, Object> all;
+
+    KeyIndex(Map<String, ConfigValue> category) {
+        this.category = category;
+        if (category instanceof CompactCategory) {
+            this.keys = ((CompactCategory) category).sortedKeys();
+        } else {
+            this.keys = category.keySet().toArray(new String[0]);
+            Arrays.sort(this.keys);
+        }
+        this.all = new View(0, keys.length);
+    }
+
+    /**
+     * Returns true if this is the index of the given category instance.
+     */
+    boolean isFor(Map<String, ConfigValue> category) {
+        return this.category == category;
+    }
+
+    /**
+     * View of the whole category, the same instance for as long as the category is reused.
+     */
+    Map<String, Object> all() {
+        return all;
+    }
+
+    /**
+     * Keys from the first key inclusive to the last key exclusive, a null key is unbounded.
+     */
+    Map<String, Object> range(String from, String to) {
+        int start = from == null ? 0 : lowerBound(from);
+        int end = to == null ? keys.length : Math.max(start, lowerBound(to));
+        return new View(start, end);
+    }
+
+    Map<String, Object> prefix(String prefix) {
+        int start = lowerBound(prefix);
+        int low = start;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return new View(start, low);
+    }
+
+    /**
+     * Index of the first key not less than the given key.
+     */
+    private int lowerBound(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Value as returned by views, lists and maps can not be modified at any depth.
+     */
+    static Object view(ConfigValue value) {
+        return view(value == null ? null : value.raw());
+    }
+
+    /**
+     * Wraps lists and maps in read-only views, which wrap the lists and maps they contain when those are read.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object view(Object raw) {
+        if (raw instanceof List) {
+            return new ListView((List<Object>) raw);
+        }
+        if (raw instanceof Map) {
+            return new MapView((Map<String, Object>) raw);
+        }
+        return raw;
+    }
+
+    private static final class ListView extends AbstractList<Object> implements RandomAccess {
+        private final List<Object> list;
+
+        private ListView(List<Object> list) {
+            this.list = list;
+        }
+
+        @Override
+        public Object get(int index) {
+            return view(list.get(index));
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+
+    private static final class MapView extends AbstractMap<String, Object> {
+        private final Map<String, Object> map;
+
+        private MapView(Map<String, Object> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return view(map.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Object>> entries = map.entrySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            Entry<String, Object> entry = entries.next();
+                            return new SimpleImmutableEntry<>(entry.getKey(), view(entry.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return map.size();
+                }
+            };
+        }
+    }
+
+    private final class View extends AbstractMap<String, Object> {
+        private final int start;
+        private final int end;
+
+        private View(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private boolean inRange(Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            int index = Arrays.binarySearch(keys, start, end, key);
+            return index >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return inRange(key) ? view(category.get(key)) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int index = start;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < end;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (index >= end) {
+                                throw new NoSuchElementException();
+                            }
+                            String key = keys[index++];
+                            return new SimpleImmutableEntry<>(key, view(category.get(key)));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return end - start;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package no.mehl.jconfig;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compiled category which is decoded on first access. Used by snapshots loaded from sources that can
+ * locate a category without decoding it, so categories that are never read are never decoded. A category
+ * which can not be decoded is decoded once, every read throws the same exception.
+ */
+final class LazyCategory extends AbstractMap<String, ConfigValue> {
+
+    private final byte[] sourceHash;
+    private Supplier<Map<String, ConfigValue>> decoder;
+    private volatile Map<String, ConfigValue> values;
+    private volatile RuntimeException error;
+
+    LazyCategory(Supplier<Map<String, ConfigValue>> decoder) {
+        this(decoder, null);
+    }
+
+    /**
+     * Creates a category decoded from a source with the given hash, see {@link RawCategory}.
+     */
+    LazyCategory(Supplier<Map<String, ConfigValue>> decoder, byte[] sourceHash) {
+        this.decoder = decoder;
+        this.sourceHash = sourceHash;
+    }
+
+    /**
+     * Creates a category already decoded from a source with the given hash.
+     */
+    LazyCategory(Map<String, ConfigValue> values, byte[] sourceHash) {
+        this.values = values;
+        this.sourceHash = sourceHash;
+    }
+
+    byte[] getSourceHash() {
+        return sourceHash;
+    }
+
+    boolean isDecoded() {
+        return values != null;
+    }
+
+    private Map<String, ConfigValue> decoded() {
+        Map<String, ConfigValue> result = values;
+        if (result == null) {
+            synchronized (this) {
+                result = values;
+                if (result == null) {
+                    if (decoder != null) {
+                        try {
+                            values = decoder.get();
+                        } catch (RuntimeException e) {
+                            error = e;
+                        }
+                        decoder = null;
+                    }
+                    if (error != null) {
+                        throw error;
+                    }
+                    result = values;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ConfigValue get(Object key) {
+        return decoded().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return decoded().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return decoded().keySet();
+    }
+
+    @Override
+    public Set<Entry<String, ConfigValue>> entrySet() {
+        return decoded().entrySet();
+    }
+}
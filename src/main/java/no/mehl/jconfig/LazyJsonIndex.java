@@ -0,0 +1,175 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Single pass over a json document which finds where each category starts and ends without parsing
+ * the values, see {@link RawCategory}. Only strict json is indexed: documents with comments, single
+ * quoted or escaped category names, or anything else unexpected are left to the ordinary parser, which
+ * also reports the errors.
+ */
+final class LazyJsonIndex {
+
+    private final byte[] json;
+    private final MessageDigest digest;
+    private int position;
+
+    private LazyJsonIndex(byte[] json) {
+        this.json = json;
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a config of raw categories, or null if the document can not be indexed.
+     */
+    static Config index(byte[] json) {
+        return new LazyJsonIndex(json).index();
+    }
+
+    private Config index() {
+        skipWhitespace();
+        if (!consume('{')) {
+            return null;
+        }
+        Config config = new Config();
+        skipWhitespace();
+        if (consume('}')) {
+            return finish(config);
+        }
+        while (true) {
+            String name = name();
+            skipWhitespace();
+            if (name == null || config.containsKey(name) || !consume(':')) {
+                return null;
+            }
+            skipWhitespace();
+            if (startsWith("null")) {
+                position += 4;
+                config.put(name, null);
+            } else if (position < json.length && json[position] == '{') {
+                int start = position;
+                if (!skipObject()) {
+                    return null;
+                }
+                digest.update(json, start, position - start);
+                config.put(name, new RawCategory(name, json, start, position - start, digest.digest()));
+            } else {
+                return null;
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return finish(config);
+            }
+            if (!consume(',')) {
+                return null;
+            }
+            skipWhitespace();
+        }
+    }
+
+    private Config finish(Config config) {
+        skipWhitespace();
+        return position == json.length ? config : null;
+    }
+
+    /**
+     * Reads a quoted name without escapes, returns null for anything else.
+     */
+    private String name() {
+        if (!consume('"')) {
+            return null;
+        }
+        int start = position;
+        while (position < json.length && json[position] != '"') {
+            if (json[position] == '\\') {
+                return null;
+            }
+            position++;
+        }
+        if (position == json.length) {
+            return null;
+        }
+        return new String(json, start, position++ - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Moves past an object, counting nested objects and arrays and skipping strings. Returns false if the
+     * object does not end or contains comments or single quoted strings.
+     */
+    private boolean skipObject() {
+        int depth = 0;
+        while (position < json.length) {
+            byte b = json[position++];
+            switch (b) {
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    if (--depth == 0) {
+                        return true;
+                    }
+                    break;
+                case '"':
+                    if (!skipString()) {
+                        return false;
+                    }
+                    break;
+                case '/':
+                case '#':
+                case '\'':
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipString() {
+        while (position < json.length) {
+            byte b = json[position++];
+            if (b == '\\') {
+                position++;
+            } else if (b == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean startsWith(String literal) {
+        if (position + literal.length() > json.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (json[position + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consume(char c) {
+        if (position < json.length && json[position] == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length && (json[position] == ' ' || json[position] == '\n' || json[position] == '\r' || json[position] == '\t')) {
+            position++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.metrics.ConfigMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to one listener. Without an executor the listener is called on the reloading thread,
+ * with an executor events are handed off and the reloading thread continues immediately. If the listener
+ * falls behind, a pending event is merged with the next one so the listener only sees the latest state.
+ * An exception thrown by the listener is logged and does not affect other listeners.
+ */
+final class ListenerDispatch<E> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerDispatch.class);
+
+    private final Object listener;
+    private final Consumer<E> delivery;
+    private final Executor executor;
+    private final BinaryOperator<E> coalescer;
+    private final ConfigMetrics metrics;
+    private final AtomicReference<Pending<E>> pending = new AtomicReference<>();
+    private final ListenerStats stats = new ListenerStats(() -> pending.get() == null ? 0 : 1);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    ListenerDispatch(Object listener, Consumer<E> delivery, Executor executor, BinaryOperator<E> coalescer, ConfigMetrics metrics) {
+        this.listener = listener;
+        this.delivery = delivery;
+        this.executor = executor;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+    }
+
+    boolean isFor(Object listener) {
+        return this.listener == listener;
+    }
+
+    ListenerStats getStats() {
+        return stats;
+    }
+
+    void dispatch(E event) {
+        long now = System.nanoTime();
+        if (executor == null) {
+            deliver(event, now);
+            return;
+        }
+        Pending<E> previous;
+        Pending<E> next;
+        do {
+            previous = pending.get();
+            next = previous == null ? new Pending<>(event, now) : new Pending<>(coalescer.apply(previous.event, event), previous.publishedAt);
+        } while (!pending.compareAndSet(previous, next));
+        if (previous != null) {
+            stats.recordCoalesced();
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                logger.warn("Executor rejected config change for listener={}", listener, e);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Pending<E> next;
+            while ((next = pending.getAndSet(null)) != null) {
+                deliver(next.event, next.publishedAt);
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        if (pending.get() != null) {
+            schedule();
+        }
+    }
+
+    private void deliver(E event, long publishedAt) {
+        long start = System.nanoTime();
+        try {
+            delivery.accept(event);
+        } catch (RuntimeException e) {
+            stats.recordFailure();
+            logger.error("Config listener={} failed", listener, e);
+        }
+        long listenerNanos = System.nanoTime() - start;
+        stats.recordDelivery(start - publishedAt, listenerNanos);
+        metrics.listenerDispatched(start - publishedAt, listenerNanos);
+    }
+
+    private static final class Pending<E> {
+        private final E event;
+        private final long publishedAt;
+
+        private Pending(E event, long publishedAt) {
+            this.event = event;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
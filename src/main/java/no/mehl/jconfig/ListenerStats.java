@@ -0,0 +1,92 @@
+package no.mehl.jconfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Dispatch statistics for a single listener. Latency is measured from the reload publishing an event
+ * until the listener is called, and listener time is the time spent inside the listener.
+ */
+public final class ListenerStats {
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong maxListenerNanos = new AtomicLong();
+    private final IntSupplier queueDepth;
+    private volatile long lastLatencyNanos;
+
+    ListenerStats(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    void recordDelivery(long latencyNanos, long listenerNanos) {
+        dispatched.increment();
+        totalLatencyNanos.add(latencyNanos);
+        lastLatencyNanos = latencyNanos;
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        maxListenerNanos.accumulateAndGet(listenerNanos, Math::max);
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordFailure() {
+        failed.increment();
+    }
+
+    /**
+     * Number of times the listener has been called.
+     */
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * Number of events merged into a pending event because the listener had not yet received the previous one.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Number of times the listener threw an exception.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Events waiting for the listener, at most one since pending events are coalesced.
+     */
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    public long getAverageLatencyNanos() {
+        long count = dispatched.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / count;
+    }
+
+    public long getMaxListenerNanos() {
+        return maxListenerNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ListenerStats{dispatched=%d, coalesced=%d, failed=%d, queueDepth=%d, averageLatencyNanos=%d, maxLatencyNanos=%d}",
+                getDispatched(), getCoalesced(), getFailed(), getQueueDepth(), getAverageLatencyNanos(), getMaxLatencyNanos());
+    }
+}
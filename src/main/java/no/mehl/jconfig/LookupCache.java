@@ -0,0 +1,98 @@
+package no.mehl.jconfig;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of values read by category and key, enabled by
+ * {@link ConfigManager.ConfigManagerBuilder#withLookupCache(int)} for compact and off heap storage. Each key hashes to one slot, a read of
+ * another key hashing to the same slot replaces it. Slots are stamped with the version of the snapshot they
+ * were read from, so publishing a snapshot invalidates every slot without touching them.
+ *
+ * Slots hold immutable entries and are read and written without locking, threads reading the same hot keys
+ * only share reads of the slot. A value holds every typed form of itself, so one slot serves getters of any type.
+ */
+public final class LookupCache {
+
+    private final Entry[] entries;
+    private final int shift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    LookupCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Lookup cache size must be positive");
+        }
+        int capacity = Integer.highestOneBit(Math.min(size, 1 << 30));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.entries = new Entry[capacity];
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    ConfigValue get(ConfigSnapshot snapshot, String category, String key) {
+        long version = snapshot.getVersion();
+        int index = slot(category, key);
+        Entry entry = entries[index];
+        if (entry != null && entry.version == version && entry.key.equals(key) && entry.category.equals(category)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        ConfigValue value = snapshot.getValue(category, key);
+        entries[index] = new Entry(version, category, key, value);
+        return value;
+    }
+
+    /**
+     * Slot of a hash, from its high bits after multiplying with the golden ratio. Hashes of names which only differ
+     * in their last characters, like key1 and key2, only differ in their low bits and would share slots.
+     */
+    int slot(String category, String key) {
+        int hash = category.hashCode() * 0x9E3779B9 + key.hashCode();
+        return shift == 32 ? 0 : (hash * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Number of slots, the requested size rounded up to a power of two.
+     */
+    public int getSize() {
+        return entries.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Reads of a key not in the cache, or cached from an older snapshot.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LookupCache{size=%d, hits=%d, misses=%d}", getSize(), getHits(), getMisses());
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final String category;
+        private final String key;
+        private final ConfigValue value;
+
+        private Entry(long version, String category, String key, ConfigValue value) {
+            this.version = version;
+            this.category = category;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package no.mehl.jconfig;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import no.mehl.jconfig.pojo.Category;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Category read by a lazy {@link ConfigParser}, kept as a slice of the raw json document until it is first
+ * read. The json is parsed and released on first access, which makes it an ordinary category. The document
+ * is shared by the categories read from it, and is kept until all of them are parsed or dropped.
+ *
+ * The MD5 hash of the json is kept, so a snapshot can reuse the compiled category of the previous snapshot
+ * without parsing when the json of the category has not changed. Changing the category drops the hash, and
+ * it is compiled like any other category. The key, value and entry views are read-only.
+ */
+final class RawCategory extends Category {
+
+    private final String name;
+    private volatile byte[] hash;
+    private volatile byte[] json;
+    private final int offset;
+    private final int length;
+    private final Map<String, Object> readOnly = Collections.unmodifiableMap(new AbstractMap<String, Object>() {
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return RawCategory.super.entrySet();
+        }
+
+        @Override
+        public Object get(Object key) {
+            return RawCategory.super.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return RawCategory.super.containsKey(key);
+        }
+    });
+
+    RawCategory(String name, byte[] json, int offset, int length, byte[] hash) {
+        this.name = name;
+        this.json = json;
+        this.offset = offset;
+        this.length = length;
+        this.hash = hash;
+    }
+
+    /**
+     * Hash of the json the category was read from, or null if the category has been changed since.
+     */
+    byte[] getHash() {
+        return hash;
+    }
+
+    boolean isParsed() {
+        return json == null;
+    }
+
+    private void parse() {
+        if (json == null) {
+            return;
+        }
+        synchronized (this) {
+            if (json == null) {
+                return;
+            }
+            Map<String, Object> values = new HashMap<>();
+            try (JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(json, offset, length), StandardCharsets.UTF_8))) {
+                in.setLenient(true);
+                ConfigTypeAdapter.INSTANCE.readCategory(in, values);
+                if (in.peek() != JsonToken.END_DOCUMENT) {
+                    throw new ConfigException(String.format("Unable to parse json of category=%s, category was not fully consumed", name));
+                }
+            } catch (IOException | RuntimeException e) {
+                throw e instanceof ConfigException ? (ConfigException) e
+                        : new ConfigException(String.format("Unable to parse json of category=%s", name), e);
+            }
+            super.putAll(values);
+            json = null;
+        }
+    }
+
+    /**
+     * Parses the category before it is changed, so the change is not overwritten, and drops the hash.
+     */
+    private void modify() {
+        parse();
+        hash = null;
+    }
+
+    @Override
+    public int size() {
+        parse();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        parse();
+        return super.isEmpty();
+    }
+
+    @Override
+    public Object get(Object key) {
+        parse();
+        return super.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        parse();
+        return super.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        parse();
+        return super.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        parse();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        modify();
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        modify();
+        super.putAll(m);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        modify();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        modify();
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        modify();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        modify();
+        return super.replace(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        modify();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+        modify();
+        super.replaceAll(function);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+        modify();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        modify();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        modify();
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        modify();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void clear() {
+        modify();
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        parse();
+        return readOnly.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        parse();
+        return readOnly.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        parse();
+        return readOnly.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        parse();
+        super.forEach(action);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        byte[] hash = this.hash;
+        if (hash != null && o instanceof RawCategory && Arrays.equals(hash, ((RawCategory) o).hash)) {
+            return true;
+        }
+        parse();
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        parse();
+        return super.hashCode();
+    }
+}
@@ -0,0 +1,77 @@
+package no.mehl.jconfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a polling source on a scheduler with a jittered interval, so sources of many config managers
+ * started at the same time spread their requests instead of polling the config server together.
+ *
+ * The first run is immediate, so the config is loaded at startup. Every following run is delayed by the
+ * interval plus or minus a random part of the jitter. A run is only scheduled after the previous one has finished, so a
+ * slow source never runs concurrently with itself. Stops when the scheduler is shut down or it is stopped.
+ */
+final class ScheduledSource implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledSource.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final Runnable source;
+    private final long intervalNanos;
+    private final long jitterNanos;
+    private volatile boolean stopped;
+    private volatile ScheduledFuture<?> next;
+
+    ScheduledSource(ScheduledExecutorService scheduler, Runnable source, long interval, TimeUnit unit, double jitter) {
+        this.scheduler = scheduler;
+        this.source = source;
+        this.intervalNanos = unit.toNanos(interval);
+        this.jitterNanos = (long) (intervalNanos * jitter);
+    }
+
+    void start() {
+        schedule(0);
+    }
+
+    /**
+     * Stops running the source, a run in progress is not interrupted.
+     */
+    void stop() {
+        stopped = true;
+        ScheduledFuture<?> future = next;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (stopped || scheduler.isShutdown()) {
+            return;
+        }
+        try {
+            source.run();
+        } catch (RuntimeException e) {
+            logger.error("Config source failed, config will be unchanged.", e);
+        }
+        long jitter = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos) : 0;
+        schedule(Math.max(0, intervalNanos + jitter));
+    }
+
+    private void schedule(long delayNanos) {
+        if (stopped) {
+            return;
+        }
+        try {
+            next = scheduler.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Scheduler was shut down, config source stopped");
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.listener.ConfigChangeListener;
+import no.mehl.jconfig.pojo.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Polling sources shared by the config managers of a JVM. Managers watching the same file or url with the
+ * same settings get one source, which reads and parses each change once and gives the parsed config to every
+ * manager. A source is stopped when the last manager using it is closed.
+ *
+ * Shared sources run on a scheduler with one daemon thread per source, which is shut down when no sources
+ * are left.
+ */
+final class SharedSources {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedSources.class);
+
+    static final SharedSources INSTANCE = new SharedSources();
+
+    private final Map<String, SharedSource> sources = new HashMap<>();
+    private final AtomicInteger threads = new AtomicInteger();
+    private ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Subscribes a listener to the source with the given key, creating and starting the source if it is not
+     * running. The listener gets the latest config of a running source right away. Closing the returned handle
+     * unsubscribes the listener.
+     *
+     * A new source is registered while holding the lock of the registry, and created after releasing it. A
+     * source reading its cached config and calling listeners while it is created does not block other sources.
+     */
+    Closeable acquire(String key, Function<ConfigChangeListener, Runnable> factory, long interval, TimeUnit unit,
+                      double jitter, ConfigChangeListener listener) {
+        SharedSource source;
+        ScheduledThreadPoolExecutor executor = null;
+        Subscriber subscriber = new Subscriber(listener);
+        synchronized (this) {
+            source = sources.get(key);
+            if (source == null) {
+                if (scheduler == null) {
+                    scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "config-shared-source-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                }
+                source = new SharedSource();
+                sources.put(key, source);
+                scheduler.setCorePoolSize(sources.size());
+                executor = scheduler;
+            }
+            source.subscribe(subscriber);
+        }
+        SharedSource subscribed = source;
+        if (executor != null) {
+            ScheduledThreadPoolExecutor sourceExecutor = executor;
+            try {
+                source.start(factory, watcher -> new ScheduledSource(sourceExecutor, watcher, interval, unit, jitter));
+            } catch (RuntimeException e) {
+                release(key, subscribed, listener);
+                throw e;
+            }
+        }
+        ParseOnce latest = source.latest();
+        if (latest != null) {
+            subscriber.deliver(latest);
+        }
+        return () -> release(key, subscribed, listener);
+    }
+
+    private synchronized void release(String key, SharedSource source, ConfigChangeListener listener) {
+        if (!source.unsubscribe(listener) || source.hasListeners()) {
+            return;
+        }
+        source.stop();
+        sources.remove(key);
+        if (sources.isEmpty()) {
+            scheduler.shutdown();
+            scheduler = null;
+        } else {
+            scheduler.setCorePoolSize(sources.size());
+        }
+    }
+
+    synchronized int size() {
+        return sources.size();
+    }
+
+    private static final class ParseOnce implements Supplier<Config> {
+        private final long sequence;
+        private final long modifiedMillis;
+        private Supplier<Config> parse;
+        private Config config;
+        private RuntimeException error;
+
+        private ParseOnce(Supplier<Config> parse, long sequence, long modifiedMillis) {
+            this.parse = parse;
+            this.sequence = sequence;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        @Override
+        public synchronized Config get() {
+            if (parse != null) {
+                try {
+                    config = parse.get();
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                parse = null;
+            }
+            if (error != null) {
+                throw error;
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Listener of a shared source. Configs are delivered in order: a config delivered late, after a newer one,
+     * is dropped.
+     */
+    private static final class Subscriber {
+        private final ConfigChangeListener listener;
+        private long delivered;
+
+        private Subscriber(ConfigChangeListener listener) {
+            this.listener = listener;
+        }
+
+        private synchronized void deliver(ParseOnce config) {
+            if (config.sequence <= delivered) {
+                return;
+            }
+            delivered = config.sequence;
+            try {
+                listener.sourceChanged(config, config.modifiedMillis);
+            } catch (RuntimeException e) {
+                logger.error("Unable to apply shared config source", e);
+            }
+        }
+    }
+
+    private static final class SharedSource implements ConfigChangeListener {
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private Runnable watcher;
+        private ScheduledSource scheduled;
+        private boolean stopped;
+        private ParseOnce latest;
+        private long changes;
+
+        /**
+         * Creates the watcher and starts polling, unless the source was stopped while the watcher was created.
+         * The watcher is created without holding the lock of the source, so it can give the source a config.
+         */
+        private void start(Function<ConfigChangeListener, Runnable> factory, Function<Runnable, ScheduledSource> schedule) {
+            Runnable created = factory.apply(this);
+            synchronized (this) {
+                watcher = created;
+                if (!stopped) {
+                    scheduled = schedule.apply(created);
+                    scheduled.start();
+                    return;
+                }
+            }
+            close(created);
+        }
+
+        private void stop() {
+            Runnable stopping;
+            synchronized (this) {
+                stopped = true;
+                if (scheduled != null) {
+                    scheduled.stop();
+                }
+                stopping = watcher;
+            }
+            close(stopping);
+        }
+
+        private static void close(Runnable watcher) {
+            if (watcher instanceof Closeable) {
+                try {
+                    ((Closeable) watcher).close();
+                } catch (IOException e) {
+                    logger.warn("Unable to close shared config source", e);
+                }
+            }
+        }
+
+        @Override
+        public void configChanged(Config config) {
+            sourceChanged(() -> config);
+        }
+
+        @Override
+        public void sourceChanged(Supplier<Config> config) {
+            sourceChanged(config, 0);
+        }
+
+        /**
+         * Gives the config to every listener, it is parsed once by the first listener reading it. Listeners are
+         * called without holding the lock of the source, so a slow listener only delays the listeners after it.
+         */
+        @Override
+        public void sourceChanged(Supplier<Config> config, long modifiedMillis) {
+            ParseOnce changed;
+            List<Subscriber> current;
+            synchronized (this) {
+                changed = new ParseOnce(config, ++changes, modifiedMillis);
+                latest = changed;
+                current = new ArrayList<>(subscribers);
+            }
+            for (Subscriber subscriber : current) {
+                subscriber.deliver(changed);
+            }
+        }
+
+        private synchronized ParseOnce latest() {
+            return latest;
+        }
+
+        private synchronized void subscribe(Subscriber subscriber) {
+            subscribers.add(subscriber);
+        }
+
+        private synchronized boolean unsubscribe(ConfigChangeListener listener) {
+            for (Iterator<Subscriber> it = subscribers.iterator(); it.hasNext(); ) {
+                if (it.next().listener == listener) {
+                    it.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized boolean hasListeners() {
+            return !subscribers.isEmpty();
+        }
+    }
+}
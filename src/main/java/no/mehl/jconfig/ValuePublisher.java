@@ -0,0 +1,199 @@
+package no.mehl.jconfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes a value read from the config, created by {@link ConfigManager#publisher(Supplier, Executor)}. Every
+ * subscriber gets the current value first, then every value which is not equal to the one before. Values are
+ * conflated: a subscriber without demand only gets the latest value once it requests more.
+ *
+ * Values which can not be read, or are null, are not published. Subscribers are completed when the config
+ * manager is closed.
+ */
+final class ValuePublisher<T> implements ConfigFlow.Publisher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValuePublisher.class);
+
+    private final Supplier<T> reader;
+    private final Executor executor;
+    private final List<ValueSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    ValuePublisher(Supplier<T> reader, Executor executor) {
+        this.reader = reader;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(ConfigFlow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ValueSubscription subscription = new ValueSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscriptions.add(subscription);
+        if (subscription.cancelled) {
+            subscriptions.remove(subscription);
+            return;
+        }
+        subscription.offerFirst(read());
+    }
+
+    /**
+     * Reads the value after a reload and offers it to every subscriber.
+     */
+    void changed() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        T value = read();
+        for (ValueSubscription subscription : subscriptions) {
+            subscription.offer(value);
+        }
+    }
+
+    void complete() {
+        for (ValueSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private T read() {
+        try {
+            return reader.get();
+        } catch (ConfigException e) {
+            return null;
+        }
+    }
+
+    private final class ValueSubscription implements ConfigFlow.Subscription {
+        private final ConfigFlow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private T pending;
+        private T delivered;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile boolean invalidRequest;
+
+        private ValueSubscription(ConfigFlow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Replaces the pending value. A value equal to the one last delivered drops the pending value, so the
+         * subscriber never gets the same value twice in a row.
+         */
+        private void offer(T value) {
+            offer(value, false);
+        }
+
+        /**
+         * Offers the value read when subscribing, unless a reload has already offered a newer one.
+         */
+        private void offerFirst(T value) {
+            offer(value, true);
+        }
+
+        private void offer(T value, boolean first) {
+            synchronized (this) {
+                if (value == null || (first && (pending != null || delivered != null))) {
+                    return;
+                }
+                pending = Objects.equals(value, delivered) ? null : value;
+            }
+            signal();
+        }
+
+        private synchronized T takePending() {
+            T value = pending;
+            if (value != null) {
+                pending = null;
+                delivered = value;
+            }
+            return value;
+        }
+
+        private void complete() {
+            completed = true;
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = true;
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void signal() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            if (executor == null) {
+                drain();
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                boolean active = !cancelled;
+                cancel();
+                work.set(0);
+                if (active) {
+                    logger.warn("Executor rejected config values for subscriber={}, cancelling its subscription", subscriber, e);
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * Delivers signals one at a time, on the thread which found no other thread delivering.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!cancelled && invalidRequest) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException("Requested values must be positive"));
+                }
+                while (!cancelled && demand.get() > 0) {
+                    T value = takePending();
+                    if (value == null) {
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(value);
+                    } catch (RuntimeException e) {
+                        logger.error("Config subscriber failed, cancelling its subscription", e);
+                        cancel();
+                    }
+                }
+                if (!cancelled && completed) {
+                    cancel();
+                    subscriber.onComplete();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -2,6 +2,24 @@ package no.mehl.jconfig.listener;
 
 import no.mehl.jconfig.pojo.Config;
 
+import java.util.function.Supplier;
+
 public interface ConfigChangeListener {
     public void configChanged(Config newConfig);
+
+    /**
+     * Called by sources with a config which is parsed when it is needed. A listener may drop the config
+     * without parsing it if a newer one arrives first. Parses right away by default.
+     */
+    public default void sourceChanged(Supplier<Config> newConfig) {
+        configChanged(newConfig.get());
+    }
+
+    /**
+     * Called by sources which know when their config was written, modifiedMillis is the time of the write
+     * in milliseconds since the epoch.
+     */
+    public default void sourceChanged(Supplier<Config> newConfig, long modifiedMillis) {
+        sourceChanged(newConfig);
+    }
 }
@@ -0,0 +1,12 @@
+package no.mehl.jconfig.listener;
+
+import no.mehl.jconfig.ConfigDiff;
+
+/**
+ * Receives the changes of a reload, limited to the category or key the listener was added for.
+ * Only called when something it subscribes to has changed.
+ */
+public interface ConfigDiffListener {
+    public void configChanged(ConfigDiff diff);
+
+}
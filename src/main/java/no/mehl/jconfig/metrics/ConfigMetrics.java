@@ -0,0 +1,75 @@
+package no.mehl.jconfig.metrics;
+
+import no.mehl.jconfig.ConfigSnapshot;
+
+import java.util.List;
+
+/**
+ * Receives measurements from a {@link no.mehl.jconfig.ConfigManager}, its parser and its watchers.
+ * All methods default to doing nothing, implement the ones of interest. Methods are called on the
+ * reading and reloading threads and must be cheap and thread safe.
+ */
+public interface ConfigMetrics {
+
+    /**
+     * Metrics which are not recorded anywhere, used when no metrics are configured.
+     */
+    ConfigMetrics NOOP = new ConfigMetrics() {
+    };
+
+    /**
+     * A value was read through one of the getters of the config manager by category and key. Reads of typed
+     * keys and bound objects are not recorded, they read a value resolved when the config was published.
+     */
+    default void lookup(String category, String key) {
+    }
+
+    /**
+     * A value was read, but the config, category or key did not exist.
+     */
+    default void miss(String category, String key) {
+    }
+
+    /**
+     * A value was read as a type it could not be converted to.
+     */
+    default void typeError(String category, String key) {
+    }
+
+    /**
+     * A document was parsed. Bytes are chars when parsing from a string, and -1 when parsing from a reader.
+     */
+    default void parsed(long bytes, long nanos) {
+    }
+
+    /**
+     * A remote config was requested. Status is the HTTP status, or -1 if the request failed.
+     */
+    default void fetched(String url, int status, long nanos) {
+    }
+
+    /**
+     * A listener was called, latency is the time from publishing the change until the listener was called.
+     */
+    default void listenerDispatched(long latencyNanos, long listenerNanos) {
+    }
+
+    /**
+     * A new snapshot was published, nanos is the time spent compiling and publishing it.
+     */
+    default void published(ConfigSnapshot snapshot, long nanos) {
+    }
+
+    /**
+     * A changed config file was published and given to listeners. Latency is the time from the file was last
+     * modified until its listeners were called, listeners with an executor may still be running.
+     */
+    default void fileReloaded(long latencyMillis) {
+    }
+
+    /**
+     * A reloaded config did not match the schema and was not published.
+     */
+    default void rejected(List<String> errors) {
+    }
+}
@@ -0,0 +1,328 @@
+package no.mehl.jconfig.metrics;
+
+import no.mehl.jconfig.ConfigException;
+import no.mehl.jconfig.ConfigSnapshot;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records config metrics in memory and exports them as an MBean named
+ * {@code no.mehl.jconfig:type=ConfigMetrics,name=<name>}.
+ *
+ * Lookups per key are sampled, only one in {@code sampleRate} lookups touches the per key counters
+ * and the counts are scaled back up, so the estimates are cheap to keep on the read path. At most
+ * {@code maxKeys} keys are counted, sampled lookups of other keys are counted together as untracked, so
+ * keys built at runtime do not grow the counters without bound.
+ */
+public class JmxConfigMetrics implements ConfigMetrics, JmxConfigMetricsMBean {
+
+    private final String name;
+    private final int sampleMask;
+    private final int maxKeys;
+    private final AtomicInteger trackedKeys = new AtomicInteger();
+    private final LongAdder untrackedKeyLookups = new LongAdder();
+    private final ObjectName objectName;
+
+    private final LongAdder lookups = new LongAdder();
+    private final Map<String, Map<String, LongAdder>> keyLookups = new ConcurrentHashMap<>();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder typeErrors = new LongAdder();
+    private final LongAdder parsedBytes = new LongAdder();
+    private final LatencyHistogram parseTimes = new LatencyHistogram();
+    private final LongAdder fetchesModified = new LongAdder();
+    private final LongAdder fetchesNotModified = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final LongAdder rejectedConfigs = new LongAdder();
+    private final LatencyHistogram fetchTimes = new LatencyHistogram();
+    private final LatencyHistogram listenerLatencies = new LatencyHistogram();
+    private final LatencyHistogram listenerTimes = new LatencyHistogram();
+    private final LatencyHistogram publishTimes = new LatencyHistogram();
+    private final LatencyHistogram fileReloadLatencies = new LatencyHistogram();
+    private volatile ConfigSnapshot snapshot;
+
+    public JmxConfigMetrics(String name) {
+        this(name, 64);
+    }
+
+    /**
+     * @param sampleRate one in this many lookups is counted per key, rounded up to a power of two
+     */
+    public JmxConfigMetrics(String name, int sampleRate) {
+        this(name, sampleRate, 1000);
+    }
+
+    /**
+     * @param sampleRate one in this many lookups is counted per key, rounded up to a power of two
+     * @param maxKeys    keys counted separately, lookups of keys seen after the limit is reached are untracked
+     */
+    public JmxConfigMetrics(String name, int sampleRate, int maxKeys) {
+        this.name = name;
+        this.maxKeys = maxKeys;
+        this.sampleMask = (sampleRate <= 1 ? 1 : Integer.highestOneBit(sampleRate - 1) << 1) - 1;
+        try {
+            this.objectName = new ObjectName("no.mehl.jconfig:type=ConfigMetrics,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new ConfigException(String.format("Invalid metrics name=%s", name), e);
+        }
+    }
+
+    /**
+     * Registers this as an MBean with the platform MBean server.
+     */
+    public JmxConfigMetrics register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new ConfigException(String.format("Unable to register metrics name=%s", name), e);
+        }
+        return this;
+    }
+
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new ConfigException(String.format("Unable to unregister metrics name=%s", name), e);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void lookup(String category, String key) {
+        lookups.increment();
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) == 0) {
+            LongAdder counter = keyCounter(category, key);
+            (counter == null ? untrackedKeyLookups : counter).increment();
+        }
+    }
+
+    /**
+     * Returns the counter of a key, or null if the key is not counted and the limit of keys is reached.
+     */
+    private LongAdder keyCounter(String category, String key) {
+        Map<String, LongAdder> keys = keyLookups.get(category);
+        LongAdder counter = keys == null ? null : keys.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        if (trackedKeys.get() >= maxKeys) {
+            return null;
+        }
+        return keyLookups.computeIfAbsent(category, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> {
+                    trackedKeys.incrementAndGet();
+                    return new LongAdder();
+                });
+    }
+
+    @Override
+    public void miss(String category, String key) {
+        misses.increment();
+    }
+
+    @Override
+    public void typeError(String category, String key) {
+        typeErrors.increment();
+    }
+
+    @Override
+    public void parsed(long bytes, long nanos) {
+        if (bytes > 0) {
+            parsedBytes.add(bytes);
+        }
+        parseTimes.record(nanos);
+    }
+
+    @Override
+    public void fetched(String url, int status, long nanos) {
+        if (status == 304) {
+            fetchesNotModified.increment();
+        } else if (status >= 200 && status < 300) {
+            fetchesModified.increment();
+        } else {
+            fetchFailures.increment();
+        }
+        fetchTimes.record(nanos);
+    }
+
+    @Override
+    public void listenerDispatched(long latencyNanos, long listenerNanos) {
+        listenerLatencies.record(latencyNanos);
+        listenerTimes.record(listenerNanos);
+    }
+
+    @Override
+    public void published(ConfigSnapshot snapshot, long nanos) {
+        this.snapshot = snapshot;
+        publishTimes.record(nanos);
+    }
+
+    @Override
+    public void fileReloaded(long latencyMillis) {
+        fileReloadLatencies.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, latencyMillis)));
+    }
+
+    @Override
+    public void rejected(List<String> errors) {
+        rejectedConfigs.increment();
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public Map<String, Long> getKeyLookups() {
+        Map<String, Long> estimates = new TreeMap<>();
+        for (Map.Entry<String, Map<String, LongAdder>> category : keyLookups.entrySet()) {
+            for (Map.Entry<String, LongAdder> key : category.getValue().entrySet()) {
+                estimates.put(category.getKey() + "." + key.getKey(), key.getValue().sum() * (sampleMask + 1));
+            }
+        }
+        return estimates;
+    }
+
+    @Override
+    public long getUntrackedKeyLookups() {
+        return untrackedKeyLookups.sum() * (sampleMask + 1);
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getTypeErrors() {
+        return typeErrors.sum();
+    }
+
+    @Override
+    public long getParses() {
+        return parseTimes.getCount();
+    }
+
+    @Override
+    public long getParsedBytes() {
+        return parsedBytes.sum();
+    }
+
+    @Override
+    public long getParseTimeMeanMicros() {
+        return micros(parseTimes.getMean());
+    }
+
+    @Override
+    public long getParseTimeP99Micros() {
+        return micros(parseTimes.getPercentile(99));
+    }
+
+    @Override
+    public long getParseTimeMaxMicros() {
+        return micros(parseTimes.getMax());
+    }
+
+    @Override
+    public long getFetches() {
+        return fetchTimes.getCount();
+    }
+
+    @Override
+    public long getFetchesModified() {
+        return fetchesModified.sum();
+    }
+
+    @Override
+    public long getFetchesNotModified() {
+        return fetchesNotModified.sum();
+    }
+
+    @Override
+    public long getFetchFailures() {
+        return fetchFailures.sum();
+    }
+
+    @Override
+    public long getFetchTimeMeanMicros() {
+        return micros(fetchTimes.getMean());
+    }
+
+    @Override
+    public long getFetchTimeP99Micros() {
+        return micros(fetchTimes.getPercentile(99));
+    }
+
+    @Override
+    public long getListenerDispatches() {
+        return listenerTimes.getCount();
+    }
+
+    @Override
+    public long getListenerLatencyP99Micros() {
+        return micros(listenerLatencies.getPercentile(99));
+    }
+
+    @Override
+    public long getListenerTimeP99Micros() {
+        return micros(listenerTimes.getPercentile(99));
+    }
+
+    @Override
+    public long getListenerTimeMaxMicros() {
+        return micros(listenerTimes.getMax());
+    }
+
+    @Override
+    public long getPublishes() {
+        return publishTimes.getCount();
+    }
+
+    @Override
+    public long getPublishTimeP99Micros() {
+        return micros(publishTimes.getPercentile(99));
+    }
+
+    @Override
+    public long getFileReloadLatencyP99Millis() {
+        return TimeUnit.NANOSECONDS.toMillis(fileReloadLatencies.getPercentile(99));
+    }
+
+    @Override
+    public long getRejectedConfigs() {
+        return rejectedConfigs.sum();
+    }
+
+    @Override
+    public long getSnapshotVersion() {
+        ConfigSnapshot current = snapshot;
+        return current == null ? -1 : current.getVersion();
+    }
+
+    @Override
+    public long getSnapshotAgeMillis() {
+        ConfigSnapshot current = snapshot;
+        return current == null ? -1 : System.currentTimeMillis() - current.getCreatedAtMillis();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,61 @@
+package no.mehl.jconfig.metrics;
+
+import java.util.Map;
+
+/**
+ * Attributes exported over JMX by {@link JmxConfigMetrics}. Times are in microseconds.
+ */
+public interface JmxConfigMetricsMBean {
+
+    public long getLookups();
+
+    public Map<String, Long> getKeyLookups();
+
+    public long getUntrackedKeyLookups();
+
+    public long getMisses();
+
+    public long getTypeErrors();
+
+    public long getParses();
+
+    public long getParsedBytes();
+
+    public long getParseTimeMeanMicros();
+
+    public long getParseTimeP99Micros();
+
+    public long getParseTimeMaxMicros();
+
+    public long getFetches();
+
+    public long getFetchesModified();
+
+    public long getFetchesNotModified();
+
+    public long getFetchFailures();
+
+    public long getFetchTimeMeanMicros();
+
+    public long getFetchTimeP99Micros();
+
+    public long getListenerDispatches();
+
+    public long getListenerLatencyP99Micros();
+
+    public long getListenerTimeP99Micros();
+
+    public long getListenerTimeMaxMicros();
+
+    public long getPublishes();
+
+    public long getPublishTimeP99Micros();
+
+    public long getFileReloadLatencyP99Millis();
+
+    public long getRejectedConfigs();
+
+    public long getSnapshotVersion();
+
+    public long getSnapshotAgeMillis();
+}
@@ -3,32 +3,52 @@ package no.mehl.jconfig.watcher;
 import no.mehl.jconfig.listener.ConfigChangeListener;
 import no.mehl.jconfig.ConfigException;
 import no.mehl.jconfig.ConfigParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 /**
- * Synchronizes config with a local file
+ * Synchronizes config with a local file. Can either be scheduled to poll for changes with {@link #run()},
+ * or block on the watch service in {@link #watch(long, TimeUnit)} to reload as soon as the file changes.
+ *
+ * Files replaced by rename (editors, Kubernetes config maps swapping their ..data symlink) are detected
+ * as well as files modified in place. Several events for the same save are reloaded once.
  */
-public class FileWatcher implements Runnable {
+public class FileWatcher implements Runnable, Closeable {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileWatcher.class);
+
+    /** Symlink swapped by Kubernetes when a mounted config map is updated */
+    private static final String CONFIG_MAP_DATA = "..data";
+
+    private WatchService watchService;
     private WatchKey watchKey;
     private ConfigChangeListener listener;
-    private ConfigParser parser = new ConfigParser();
+    private ConfigParser parser;
     private Path configPath;
 
     public FileWatcher(String directory, String fileName, ConfigChangeListener listener) {
+        this(directory, fileName, listener, new ConfigParser());
+    }
+
+    public FileWatcher(String directory, String fileName, ConfigChangeListener listener, ConfigParser parser) {
         Path path = Paths.get(directory);
         this.listener = listener;
+        this.parser = parser;
         this.configPath = Paths.get(directory, fileName);
 
         try {
-            WatchService watchService = FileSystems.getDefault().newWatchService();
+            this.watchService = FileSystems.getDefault().newWatchService();
             this.watchKey = path.register(watchService, ENTRY_CREATE,ENTRY_DELETE,ENTRY_MODIFY);
         } catch (IOException e) {
             throw new ConfigException(String.format("Unable to setup file watcher for directory=%s and file=%s", directory, fileName), e);
@@ -37,13 +57,67 @@ public class FileWatcher implements Runnable {
 
     @Override
     public void run() {
-        List<WatchEvent<?>> events = watchKey.pollEvents();
-        events.stream()
-                .filter(this::fileWasChanged)
-                .forEach(e -> listener.configChanged(parser.parseFile(configPath)));
+        if (fileWasChanged(watchKey.pollEvents())) {
+            reload();
+        }
+        watchKey.reset();
+    }
+
+    /**
+     * Blocks until the watcher is closed or the thread is interrupted, reloading the config on every change.
+     * Events arriving within the debounce period of each other are reloaded together.
+     */
+    public void watch(long debounce, TimeUnit unit) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = fileWasChanged(key.pollEvents());
+                key.reset();
+                while ((key = watchService.poll(debounce, unit)) != null) {
+                    changed |= fileWasChanged(key.pollEvents());
+                    key.reset();
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("File watcher for path={} was closed", configPath);
+        }
     }
 
-    private boolean fileWasChanged(WatchEvent event) {
-        return event.kind() == StandardWatchEventKinds.ENTRY_MODIFY && event.context().toString().equals(configPath.getFileName().toString());
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Hands the changed file to the listener with its modified time, parsing is left to the listener.
+     */
+    private void reload() {
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(configPath).toMillis();
+        } catch (IOException e) {
+            logger.info("Config file path={} was removed, config will be unchanged.", configPath);
+            return;
+        }
+        listener.sourceChanged(() -> parser.parseFile(configPath), modified);
+        logger.debug("Config file path={} changed", configPath);
+    }
+
+    private boolean fileWasChanged(List<WatchEvent<?>> events) {
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == OVERFLOW) {
+                return true;
+            }
+            String name = event.context().toString();
+            if (name.equals(configPath.getFileName().toString()) || name.equals(CONFIG_MAP_DATA)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,233 @@
+package no.mehl.jconfig.watcher;
+
+import no.mehl.jconfig.ConfigException;
+import no.mehl.jconfig.ConfigParser;
+import no.mehl.jconfig.listener.ConfigChangeListener;
+import no.mehl.jconfig.metrics.ConfigMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronizes config with a web service pushing changes as Server-Sent Events. The data of every event
+ * is a whole json config document, and is parsed when it differs from the previous one. Heartbeat comments
+ * from the server keep the connection from timing out.
+ *
+ * When the connection fails or is closed by the server, the endpoint is polled as a plain json resource
+ * with a {@link RemoteFileWatcher} while reconnecting, with an exponential, jittered backoff. A server
+ * answering with json instead of an event stream is polled the same way. Pushed and polled documents share
+ * one hash, so a document is not applied again when it arrives the other way.
+ */
+public class PushRemoteFileWatcher implements Runnable, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushRemoteFileWatcher.class);
+
+    public static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 90_000;
+
+    private URL url;
+    private ConfigChangeListener listener;
+    private ConfigParser parser;
+    private ConfigMetrics metrics;
+    private RemoteFileWatcher fallback;
+    private int connectTimeoutMillis;
+    private int idleTimeoutMillis;
+    private long fallbackIntervalMillis;
+    private long initialBackoffMillis = 1000;
+    private long maxBackoffMillis = 60_000;
+    private String lastEventId;
+    private volatile HttpURLConnection connection;
+    private volatile boolean closed;
+
+    public PushRemoteFileWatcher(String endpoint, ConfigChangeListener listener, long fallbackInterval, TimeUnit unit) {
+        this(endpoint, listener, new ConfigParser(), ConfigMetrics.NOOP, RemoteFileWatcher.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                DEFAULT_IDLE_TIMEOUT_MILLIS, fallbackInterval, unit);
+    }
+
+    /**
+     * Creates a watcher which reconnects when no event or heartbeat has arrived within the idle timeout,
+     * and polls at the fallback interval while disconnected.
+     */
+    public PushRemoteFileWatcher(String endpoint, ConfigChangeListener listener, ConfigParser parser, ConfigMetrics metrics,
+                                 int connectTimeoutMillis, int idleTimeoutMillis, long fallbackInterval, TimeUnit unit) {
+        try {
+            url = new URL(endpoint);
+        } catch (MalformedURLException e) {
+            throw new ConfigException(String.format("Malformed url=%s", endpoint), e);
+        }
+        this.listener = listener;
+        this.parser = parser;
+        this.metrics = metrics;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.fallbackIntervalMillis = unit.toMillis(fallbackInterval);
+        this.fallback = new RemoteFileWatcher(endpoint, listener, parser, metrics, connectTimeoutMillis, connectTimeoutMillis + idleTimeoutMillis);
+    }
+
+    /**
+     * Sets the delay before the first reconnect, doubled for each failed reconnect up to the max delay.
+     * One second and one minute by default.
+     */
+    public PushRemoteFileWatcher withBackoff(long initial, long max, TimeUnit unit) {
+        this.initialBackoffMillis = unit.toMillis(initial);
+        this.maxBackoffMillis = unit.toMillis(max);
+        return this;
+    }
+
+    /**
+     * Blocks until the watcher is closed or the thread is interrupted, applying changes as they are pushed.
+     */
+    @Override
+    public void run() {
+        long backoff = initialBackoffMillis;
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (stream()) {
+                    backoff = initialBackoffMillis;
+                }
+                if (closed) {
+                    break;
+                }
+                logger.info("Config event stream from url={} ended, polling until reconnected", url);
+            } catch (IOException e) {
+                if (closed) {
+                    break;
+                }
+                logger.warn("Config event stream from url={} failed, polling until reconnected", url, e);
+            }
+            if (!pollFor(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1))) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, maxBackoffMillis);
+        }
+        logger.debug("Push watcher for url={} stopped", url);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect();
+        }
+    }
+
+    /**
+     * Polls right away and then at the fallback interval until the delay has passed. Returns false if
+     * interrupted or closed.
+     */
+    private boolean pollFor(long delayMillis) {
+        long end = System.currentTimeMillis() + delayMillis;
+        fallback.run();
+        try {
+            long remaining;
+            while (!closed && (remaining = end - System.currentTimeMillis()) > 0) {
+                Thread.sleep(Math.min(remaining, fallbackIntervalMillis));
+                if (!closed && System.currentTimeMillis() < end) {
+                    fallback.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !closed;
+    }
+
+    /**
+     * Reads events until the stream ends. Returns true if the stream was established, false if the server
+     * answered with something else than an event stream.
+     */
+    private boolean stream() throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection current = (HttpURLConnection) url.openConnection();
+        current.setConnectTimeout(connectTimeoutMillis);
+        current.setReadTimeout(idleTimeoutMillis);
+        current.setRequestProperty("Accept", "text/event-stream");
+        current.setRequestProperty("Cache-Control", "no-cache");
+        if (lastEventId != null) {
+            current.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        connection = current;
+        try {
+            int status = current.getResponseCode();
+            metrics.fetched(url.toString(), status, System.nanoTime() - start);
+            if (status != HttpURLConnection.HTTP_OK) {
+                current.disconnect();
+                throw new IOException(String.format("Unexpected status=%d", status));
+            }
+            String contentType = current.getContentType();
+            if (contentType == null || !contentType.startsWith("text/event-stream")) {
+                logger.info("Url={} does not push events, content type={}", url, contentType);
+                current.getInputStream().close();
+                return false;
+            }
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(current.getInputStream(), StandardCharsets.UTF_8))) {
+                readEvents(in);
+            }
+            return true;
+        } finally {
+            connection = null;
+        }
+    }
+
+    private void readEvents(BufferedReader in) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String event = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0 && (event == null || event.equals("config") || event.equals("message"))) {
+                    apply(data.substring(0, data.length() - 1));
+                }
+                data.setLength(0);
+                event = null;
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(line.length() > colon + 1 && line.charAt(colon + 1) == ' ' ? colon + 2 : colon + 1);
+            switch (field) {
+                case "data":
+                    data.append(value).append('\n');
+                    break;
+                case "event":
+                    event = value;
+                    break;
+                case "id":
+                    lastEventId = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void apply(String data) {
+        byte[] content = data.getBytes(StandardCharsets.UTF_8);
+        String hash = RemoteFileWatcher.md5Hex(content);
+        if (fallback.getHash().map(hash::equals).orElse(false)) {
+            logger.debug("Pushed config from url={} was unchanged", url);
+            return;
+        }
+        try {
+            listener.sourceChanged(() -> parser.parse(new ByteArrayInputStream(content)));
+            fallback.setHash(hash);
+        } catch (ConfigException e) {
+            logger.error("Unable to parse pushed config from url={}, config will be unchanged.", url, e);
+        }
+    }
+}
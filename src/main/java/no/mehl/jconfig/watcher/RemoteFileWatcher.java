@@ -3,77 +3,356 @@ package no.mehl.jconfig.watcher;
 import no.mehl.jconfig.listener.ConfigChangeListener;
 import no.mehl.jconfig.ConfigException;
 import no.mehl.jconfig.ConfigParser;
+import no.mehl.jconfig.metrics.ConfigMetrics;
+import no.mehl.jconfig.pojo.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.annotation.adapters.HexBinaryAdapter;
 import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
- * Synchronizes config with a web service
+ * Synchronizes config with a web service. Requests are conditional when the server sends an ETag or
+ * Last-Modified header, so an unchanged config is answered with 304 and no body. Bodies may be gzip or
+ * deflate encoded and are hashed while read, the config is only parsed when the hash has changed.
+ *
+ * With deltas enabled the version of the config, the MD5 hash of the last full document as upper case
+ * hex, is sent in the
+ * {@value #VERSION_HEADER} header. A server knowing the version may answer with a JSON Merge Patch or a
+ * JSON Patch and the version the patch leads to, which is applied to the current config. A server not
+ * knowing the version answers with the full document. If a patch can not be applied, the full document
+ * is requested right away.
+ *
+ * With a cache file the last config read is stored locally together with its version, ETag and
+ * Last-Modified, and {@link #loadCache()} loads it before the first request. The first request then only
+ * revalidates the cached config, and the cached config is used while the server can not be reached.
  */
 public class RemoteFileWatcher implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(RemoteFileWatcher.class);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int CACHE_MAGIC = 0x4A434643;
+
+    public static final String VERSION_HEADER = "X-Config-Version";
+    public static final String MERGE_PATCH = "application/merge-patch+json";
+    public static final String JSON_PATCH = "application/json-patch+json";
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
 
     private URL url;
     private Optional<String> cachedHash = Optional.empty();
+    private Optional<String> etag = Optional.empty();
+    private Optional<String> lastModified = Optional.empty();
     private ConfigParser parser;
     private ConfigChangeListener listener;
+    private ConfigMetrics metrics;
+    private int connectTimeoutMillis;
+    private int readTimeoutMillis;
+    private boolean deltas;
+    private Config current;
+    private Path cache;
 
     public RemoteFileWatcher(String endpoint, ConfigChangeListener listener) {
+        this(endpoint, listener, new ConfigParser(), ConfigMetrics.NOOP);
+    }
+
+    public RemoteFileWatcher(String endpoint, ConfigChangeListener listener, ConfigParser parser, ConfigMetrics metrics) {
+        this(endpoint, listener, parser, metrics, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a watcher which gives up a request when connecting or waiting for data takes longer than the
+     * given timeouts, so a hung server does not block the thread running the watcher. 0 waits forever.
+     */
+    public RemoteFileWatcher(String endpoint, ConfigChangeListener listener, ConfigParser parser, ConfigMetrics metrics,
+                             int connectTimeoutMillis, int readTimeoutMillis) {
         try {
             url = new URL(endpoint);
         } catch (MalformedURLException e) {
             throw new ConfigException(String.format("Malformed url=%s", endpoint), e);
         }
         this.listener = listener;
-        this.parser = new ConfigParser();
+        this.parser = parser;
+        this.metrics = metrics;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Asks the server for patches from the current version instead of the full document.
+     */
+    public RemoteFileWatcher withDeltas() {
+        this.deltas = true;
+        return this;
+    }
+
+    /**
+     * Stores the last config read in the given file, see {@link #loadCache()}.
+     */
+    public RemoteFileWatcher withCache(Path cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Notifies the listener with the config stored in the cache file, if there is one for this url. Returns
+     * false if there was no cached config or it could not be read.
+     */
+    public boolean loadCache() {
+        if (cache == null || !Files.exists(cache)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != CACHE_MAGIC) {
+                throw new IOException("Not a config cache file");
+            }
+            if (!in.readUTF().equals(url.toString())) {
+                logger.info("Cache file={} is for another url than url={}, ignoring it", cache, url);
+                return false;
+            }
+            String hash = in.readUTF();
+            String cachedEtag = in.readUTF();
+            String cachedLastModified = in.readUTF();
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+
+            Config config = parser.parse(new ByteArrayInputStream(content));
+            listener.configChanged(config);
+            current = deltas ? config : null;
+            cachedHash = Optional.of(hash);
+            etag = cachedEtag.isEmpty() ? Optional.empty() : Optional.of(cachedEtag);
+            lastModified = cachedLastModified.isEmpty() ? Optional.empty() : Optional.of(cachedLastModified);
+            logger.info("Loaded cached config for url={} from file={}", url, cache);
+            return true;
+        } catch (IOException | ConfigException e) {
+            logger.warn("Unable to load cached config for url={} from file={}", url, cache, e);
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the cache file with the given config, failures are logged and otherwise ignored.
+     */
+    private void writeCache(byte[] content) {
+        if (cache == null) {
+            return;
+        }
+        Path temp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try {
+            if (cache.getParent() != null) {
+                Files.createDirectories(cache.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeUTF(url.toString());
+                out.writeUTF(cachedHash.orElse(""));
+                out.writeUTF(etag.orElse(""));
+                out.writeUTF(lastModified.orElse(""));
+                out.writeInt(content.length);
+                out.write(content);
+            }
+            try {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to write config cache file={}", cache, e);
+        }
     }
 
     @Override
     public void run() {
-        BufferedReader in;
-        String readLine;
+        long start = System.nanoTime();
+        int status = -1;
         try {
-            Path tempPath = Files.createTempFile("remote-config", ".json");
-            File tempFile = tempPath.toFile();
-            in = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
-            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
-
-            while ((readLine = in.readLine()) != null) {
-                out.write(readLine);
+            URLConnection connection = openConnection();
+            status = connection instanceof HttpURLConnection ? ((HttpURLConnection) connection).getResponseCode() : 200;
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                drain((HttpURLConnection) connection);
+                metrics.fetched(url.toString(), status, System.nanoTime() - start);
+                logger.debug("Remote config at url={} was not modified", url);
+                return;
             }
-            out.flush();
-            out.close();
-
-            String jsonContent = new String(Files.readAllBytes(tempPath));
-            Optional<String> md5Hash = getMD5Hash(jsonContent);
-            logger.debug("Created md5hash={} for content={}", md5Hash, jsonContent);
-            if (!cachedHash.isPresent() || (md5Hash.isPresent() && !cachedHash.get().equals(md5Hash.get()))) {
-                listener.configChanged(parser.parseJson(jsonContent));
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] content = readContent(connection, digest);
+            metrics.fetched(url.toString(), status, System.nanoTime() - start);
+            String contentType = connection.getContentType();
+            if (deltas && current != null && contentType != null && (contentType.startsWith(MERGE_PATCH) || contentType.startsWith(JSON_PATCH))) {
+                if (!applyPatch(connection, contentType, content)) {
+                    run();
+                }
+                return;
+            }
+            Optional<String> md5Hash = getMD5Hash(digest);
+            logger.debug("Created md5hash={} for content of {} bytes", md5Hash, content.length);
+            boolean changed = !cachedHash.isPresent() || (md5Hash.isPresent() && !cachedHash.get().equals(md5Hash.get()));
+            // Patches are applied to the current config and the cache only stores configs that could be parsed,
+            // otherwise the config is parsed when the listener needs it
+            if (changed && (deltas || cache != null)) {
+                Config config = parser.parse(new ByteArrayInputStream(content));
+                listener.configChanged(config);
+                current = deltas ? config : null;
+            } else if (changed) {
+                listener.sourceChanged(() -> parser.parse(new ByteArrayInputStream(content)));
             }
             cachedHash = md5Hash;
+            etag = Optional.ofNullable(connection.getHeaderField("ETag"));
+            lastModified = Optional.ofNullable(connection.getHeaderField("Last-Modified"));
+            if (changed) {
+                writeCache(content);
+            }
         } catch (IOException e) {
+            metrics.fetched(url.toString(), status < 400 ? -1 : status, System.nanoTime() - start);
             logger.error("Unable to read remote config file, config will be unchanged.", e);
         } catch (Exception e) {
             logger.error("Error when reading content", e);
         }
     }
 
-    private Optional<String> getMD5Hash(String content) {
+    /**
+     * Applies a patch to the current config. Returns false and forgets the current version if the patch
+     * can not be applied, so the next request gets the full document.
+     */
+    private boolean applyPatch(URLConnection connection, String contentType, byte[] content) {
+        String version = connection.getHeaderField(VERSION_HEADER);
+        try {
+            if (version == null) {
+                throw new ConfigException(String.format("Patch without %s header", VERSION_HEADER));
+            }
+            ByteArrayInputStream patch = new ByteArrayInputStream(content);
+            Config config = contentType.startsWith(MERGE_PATCH) ? parser.applyMergePatch(current, patch) : parser.applyJsonPatch(current, patch);
+            listener.configChanged(config);
+            logger.debug("Patched config from url={} to version={}", url, version);
+            current = config;
+            cachedHash = Optional.of(version);
+            etag = Optional.ofNullable(connection.getHeaderField("ETag"));
+            lastModified = Optional.ofNullable(connection.getHeaderField("Last-Modified"));
+            if (cache != null) {
+                writeCache(parser.toJson(config).getBytes(StandardCharsets.UTF_8));
+            }
+            return true;
+        } catch (ConfigException e) {
+            logger.warn("Unable to apply patch from url={}, requesting the full config.", url, e);
+            current = null;
+            cachedHash = Optional.empty();
+            etag = Optional.empty();
+            lastModified = Optional.empty();
+            return false;
+        }
+    }
+
+    /**
+     * Hash of the last full document read, empty before the first read.
+     */
+    Optional<String> getHash() {
+        return cachedHash;
+    }
+
+    /**
+     * Sets the hash of a document the listener got from elsewhere, so the next request only notifies the
+     * listener if the document has changed since. Validators of the previous response no longer apply.
+     */
+    void setHash(String hash) {
+        cachedHash = Optional.of(hash);
+        etag = Optional.empty();
+        lastModified = Optional.empty();
+        current = null;
+    }
+
+    private URLConnection openConnection() throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        if (deltas && current != null && cachedHash.isPresent()) {
+            connection.setRequestProperty("Accept", MERGE_PATCH + ", " + JSON_PATCH + ", application/json");
+            connection.setRequestProperty(VERSION_HEADER, cachedHash.get());
+        }
+        if (cachedHash.isPresent()) {
+            etag.ifPresent(value -> connection.setRequestProperty("If-None-Match", value));
+            lastModified.ifPresent(value -> connection.setRequestProperty("If-Modified-Since", value));
+        }
+        return connection;
+    }
+
+    /**
+     * Reads and closes an empty response, so the connection can be reused for the next request.
+     */
+    private void drain(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    /**
+     * Reads the decoded body, updating the digest as the bytes are read. The stream is read to the end and
+     * closed without disconnecting, which lets keep-alive reuse the connection.
+     */
+    private byte[] readContent(URLConnection connection, MessageDigest digest) throws IOException {
+        try (InputStream in = new DigestInputStream(decode(connection), digest)) {
+            int length = connection.getContentLength();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? length : 8192);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private InputStream decode(URLConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        String encoding = connection.getContentEncoding();
+        if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(in);
+        }
+        if ("deflate".equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    private Optional<String> getMD5Hash(MessageDigest digest) {
+        return Optional.of(hex(digest.digest()));
+    }
+
+    /**
+     * Upper case hex of the MD5 hash of the content, as compared by {@link #run()}.
+     */
+    static String md5Hex(byte[] content) {
         try {
-            return Optional.ofNullable((new HexBinaryAdapter()).marshal(MessageDigest.getInstance("MD5").digest(content.getBytes())));
+            return hex(MessageDigest.getInstance("MD5").digest(content));
         } catch (NoSuchAlgorithmException e) {
-            logger.error("Unable to create hash of string", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
         }
-        return Optional.empty();
+        return new String(hex);
     }
 }
@@ -0,0 +1,119 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Config;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BinaryConfigTest {
+
+    private static final String JSON = "{\"local\": {\"s\": \"bar\", \"d\": 1.5, \"b\": false, \"n\": null, \"l\": [1, \"two\", [3]], \"m\": {\"x\": \"bar\"}}, " +
+            "\"other\": {\"foo\": [\"a\", \"b\"]}, \"empty\": {}}";
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void writeBinary_givenConfig_shouldReadSameConfig() throws IOException {
+        Config config = parser.parseJson(JSON);
+        assertEquals(config, parser.parseBinary(write(config)));
+    }
+
+    @Test
+    public void withBinaryFile_givenConfig_shouldDecodeCategoriesOnFirstRead() throws IOException {
+        Path path = write(parser.parseJson(JSON));
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withBinaryFile(path.toString()).build();
+        LazyCategory other = (LazyCategory) configManager.snapshot().categories().get("other");
+        LazyCategory local = (LazyCategory) configManager.snapshot().categories().get("local");
+
+        assertEquals(Arrays.asList("a", "b"), configManager.getStringList("other", "foo"));
+        assertTrue(other.isDecoded());
+        assertFalse(local.isDecoded());
+        assertEquals("bar", configManager.getString("s"));
+    }
+
+    @Test
+    public void configChanged_givenBinarySnapshot_shouldReuseUnchangedCategories() throws IOException {
+        Path path = write(parser.parseJson(JSON));
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withBinaryFile(path.toString()).build();
+        ConfigSnapshot binary = configManager.snapshot();
+
+        configManager.configChanged(parser.parseJson(JSON.replace("\"bar\"", "\"baz\"")));
+        assertSame(binary.categories().get("other"), configManager.snapshot().categories().get("other"));
+        assertEquals("baz", configManager.getString("s"));
+    }
+
+    @Test
+    public void withBinaryFile_givenOverrides_shouldMergeLayers() throws IOException {
+        Path path = write(parser.parseJson(JSON));
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson(ConfigLayer.OVERRIDES, "{\"local\": {\"s\": \"baz\"}}")
+                .withBinaryFile(path.toString())
+                .build();
+
+        assertEquals("baz", configManager.getString("s"));
+        assertEquals(1.5, configManager.getDouble("d"), 0);
+        assertEquals(Arrays.asList("a", "b"), configManager.getStringList("other", "foo"));
+    }
+
+    @Test
+    public void withBinaryFile_givenStorage_shouldCompileWithStorage() throws IOException {
+        Path path = write(parser.parseJson(JSON));
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withStorage(ConfigStorage.COMPACT)
+                .withBinaryFile(path.toString())
+                .build();
+
+        assertTrue(configManager.snapshot().categories().get("local") instanceof CompactCategory);
+        assertEquals("bar", configManager.getString("s"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void withBinaryFile_givenJsonFile_shouldThrowException() throws IOException {
+        Path path = Files.createTempFile("config", ".json");
+        path.toFile().deleteOnExit();
+        Files.write(path, JSON.getBytes());
+        new ConfigManager.ConfigManagerBuilder().withBinaryFile(path.toString());
+    }
+
+    @Test
+    public void parseBinary_givenTruncatedFile_shouldThrowConfigException() throws IOException {
+        byte[] bytes = Files.readAllBytes(write(parser.parseJson(JSON)));
+        Path truncated = Files.createTempFile("config", ".bin");
+        truncated.toFile().deleteOnExit();
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            try {
+                parser.parseBinary(truncated);
+                fail("Expected ConfigException for length=" + length);
+            } catch (ConfigException e) {
+                assertTrue(e.getMessage().contains(truncated.toString()));
+            }
+        }
+    }
+
+    @Test
+    public void withBinaryFile_givenTruncatedCategory_shouldThrowConfigExceptionOnRead() throws IOException {
+        Path path = write(parser.parseJson("{\"other\": {\"baz\": [\"a\", \"b\"]}}"));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withBinaryFile(path.toString()).build();
+        try {
+            configManager.getStringList("other", "baz");
+            fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            assertTrue(e.getMessage().contains(path.toString()));
+        }
+    }
+
+    private Path write(Config config) throws IOException {
+        Path path = Files.createTempFile("config", ".bin");
+        path.toFile().deleteOnExit();
+        parser.writeBinary(config, path);
+        return path;
+    }
+}
@@ -0,0 +1,120 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConfigBindingTest {
+
+    public static class ServerConfig {
+        private String host = "localhost";
+        private int port;
+        private boolean secure;
+        private List<String> paths;
+        @ConfigBinding.Key("max-connections")
+        private long maxConnections;
+    }
+
+    public interface ClientConfig {
+        String getHost();
+
+        double timeout();
+
+        Integer getRetries();
+    }
+
+    public interface Unsupported {
+        void start();
+    }
+
+    @Test
+    public void bind_givenClass_shouldSetFields() {
+        ConfigManager configManager = buildJson("{\"server\": {\"port\": 8080, \"secure\": true, \"paths\": [\"a\", \"b\"], \"max-connections\": 100}}");
+        ServerConfig config = configManager.bind("server", ServerConfig.class).get();
+        assertEquals("localhost", config.host);
+        assertEquals(8080, config.port);
+        assertTrue(config.secure);
+        assertEquals(Arrays.asList("a", "b"), config.paths);
+        assertEquals(100, config.maxConnections);
+    }
+
+    @Test
+    public void bind_givenInterface_shouldImplementMethods() {
+        ConfigManager configManager = buildJson("{\"client\": {\"host\": \"example.com\", \"timeout\": 1.5}}");
+        ClientConfig config = configManager.bind("client", ClientConfig.class).get();
+        assertEquals("example.com", config.getHost());
+        assertEquals(1.5, config.timeout(), 0);
+        assertNull(config.getRetries());
+    }
+
+    @Test
+    public void bind_givenInterface_shouldAnswerRepeatedCallsOfEveryInstance() {
+        ConfigManager configManager = buildJson("{\"client\": {\"host\": \"a\", \"timeout\": 1}}");
+        ConfigBinding<ClientConfig> client = configManager.bind("client", ClientConfig.class);
+        ClientConfig first = client.get();
+        configManager.configChanged(new ConfigParser().parseJson("{\"client\": {\"host\": \"b\", \"timeout\": 2, \"retries\": 3}}"));
+        ClientConfig second = client.get();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a", first.getHost());
+            assertEquals("b", second.getHost());
+            assertEquals(2, second.timeout(), 0);
+            assertEquals(Integer.valueOf(3), second.getRetries());
+        }
+        assertEquals(first, first);
+        assertNotSame(first, second);
+        assertTrue(second.toString().contains("host=b"));
+    }
+
+    @Test
+    public void bind_givenReload_shouldOnlyCreateObjectForChangedCategory() {
+        ConfigManager configManager = buildJson("{\"server\": {\"port\": 1}, \"client\": {\"host\": \"a\", \"timeout\": 1}}");
+        ConfigBinding<ServerConfig> server = configManager.bind("server", ServerConfig.class);
+        ConfigBinding<ClientConfig> client = configManager.bind("client", ClientConfig.class);
+        ServerConfig serverBefore = server.get();
+        ClientConfig clientBefore = client.get();
+
+        configManager.configChanged(new ConfigParser().parseJson("{\"server\": {\"port\": 2}, \"client\": {\"host\": \"a\", \"timeout\": 1}}"));
+        assertEquals(2, server.get().port);
+        assertNotSame(serverBefore, server.get());
+        assertSame(clientBefore, client.get());
+    }
+
+    @Test
+    public void bind_givenListener_shouldSeeNewObject() {
+        ConfigManager configManager = buildJson("{\"server\": {\"port\": 1}}");
+        ConfigBinding<ServerConfig> server = configManager.bind("server", ServerConfig.class);
+        int[] seen = new int[1];
+        configManager.addConfigChangedListener(manager -> seen[0] = server.get().port);
+
+        configManager.configChanged(new ConfigParser().parseJson("{\"server\": {\"port\": 2}}"));
+        assertEquals(2, seen[0]);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void bind_givenWrongType_shouldThrowOnGet() {
+        buildJson("{\"server\": {\"port\": \"eighty\"}}").bind("server", ServerConfig.class).get();
+    }
+
+    @Test(expected = ConfigException.class)
+    public void bind_givenMissingPrimitiveOfInterface_shouldThrowOnGet() {
+        buildJson("{\"client\": {\"host\": \"a\"}}").bind("client", ClientConfig.class).get();
+    }
+
+    @Test(expected = ConfigException.class)
+    public void bind_givenMissingCategory_shouldThrowOnGet() {
+        buildJson("{\"client\": {}}").bind("server", ServerConfig.class).get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bind_givenUnsupportedType_shouldThrow() {
+        buildJson("{\"local\": {}}").bind(Unsupported.class);
+    }
+
+    private ConfigManager buildJson(String json) {
+        return new ConfigManager.ConfigManagerBuilder().withJson(json).build();
+    }
+}
@@ -0,0 +1,65 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConfigDiffTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void between_givenChanges_shouldReportCategoriesAndKeys() {
+        ConfigSnapshot oldSnapshot = compile("{\"a\": {\"x\": 1, \"y\": 2}, \"b\": {\"z\": 3}}");
+        ConfigSnapshot newSnapshot = compile("{\"a\": {\"x\": 1, \"y\": 5, \"w\": 0}, \"c\": {\"z\": 3}}", oldSnapshot);
+        ConfigDiff diff = ConfigDiff.between(oldSnapshot, newSnapshot);
+
+        assertEquals(Collections.singleton("c"), diff.getAddedCategories());
+        assertEquals(Collections.singleton("b"), diff.getRemovedCategories());
+        assertEquals(Collections.singleton("a"), diff.getChangedCategories());
+        assertEquals(Collections.singleton("y"), diff.getChangedKeys("a"));
+        assertEquals(Collections.singleton("w"), diff.getAddedKeys("a"));
+        assertEquals(Collections.singleton("z"), diff.getRemovedKeys("b"));
+        assertFalse(diff.affects("a", "x"));
+    }
+
+    @Test
+    public void compile_givenUnchangedCategory_shouldReusePreviousCategory() {
+        ConfigSnapshot oldSnapshot = compile("{\"a\": {\"x\": [1, 2]}, \"b\": {\"y\": \"foo\"}}");
+        ConfigSnapshot newSnapshot = compile("{\"a\": {\"x\": [1, 2]}, \"b\": {\"y\": \"bar\"}}", oldSnapshot);
+
+        assertSame(oldSnapshot.categories().get("a"), newSnapshot.categories().get("a"));
+        assertNotSame(oldSnapshot.categories().get("b"), newSnapshot.categories().get("b"));
+        assertTrue(ConfigDiff.between(oldSnapshot, compile("{\"a\": {\"x\": [1, 2]}, \"b\": {\"y\": \"foo\"}}", oldSnapshot)).isEmpty());
+    }
+
+    @Test
+    public void addConfigDiffListener_givenKey_shouldOnlyReceiveChangesForKey() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withJson("{\"local\": {\"foo\": 1, \"bar\": 1}}").build();
+        List<ConfigDiff> fooDiffs = new ArrayList<>();
+        List<ConfigDiff> categoryDiffs = new ArrayList<>();
+        configManager.addConfigDiffListener("local", "foo", fooDiffs::add);
+        configManager.addConfigDiffListener("local", categoryDiffs::add);
+
+        configManager.configChanged(parser.parseJson("{\"local\": {\"foo\": 1, \"bar\": 2}}"));
+        assertTrue(fooDiffs.isEmpty());
+        assertEquals(1, categoryDiffs.size());
+
+        configManager.configChanged(parser.parseJson("{\"local\": {\"foo\": 2, \"bar\": 2}}"));
+        assertEquals(1, fooDiffs.size());
+        assertEquals(Collections.singleton("foo"), fooDiffs.get(0).getChangedKeys("local"));
+        assertEquals(2, fooDiffs.get(0).getNewSnapshot().getInt("local", "foo"));
+    }
+
+    private ConfigSnapshot compile(String json) {
+        return compile(json, ConfigSnapshot.EMPTY);
+    }
+
+    private ConfigSnapshot compile(String json, ConfigSnapshot previous) {
+        return ConfigSnapshot.compile(parser.parseJson(json), "local", previous);
+    }
+}
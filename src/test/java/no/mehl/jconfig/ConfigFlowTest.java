@@ -0,0 +1,161 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConfigFlowTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void publisher_givenKey_shouldPublishCurrentThenDistinctValues() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        configManager.publisher(configManager.intKey("foo")).subscribe(subscriber);
+
+        reload(configManager, "{\"local\": {\"foo\": 1, \"bar\": 1}}");
+        reload(configManager, "{\"local\": {\"foo\": 2}}");
+        reload(configManager, "{\"local\": {}}");
+        reload(configManager, "{\"local\": {\"foo\": 3}}");
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.values);
+    }
+
+    @Test
+    public void publisher_givenNoDemand_shouldConflateToLatestValue() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(0);
+        configManager.publisher(configManager.intKey("foo")).subscribe(subscriber);
+
+        reload(configManager, "{\"local\": {\"foo\": 2}}");
+        reload(configManager, "{\"local\": {\"foo\": 3}}");
+        assertTrue(subscriber.values.isEmpty());
+
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(3), subscriber.values);
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(3), subscriber.values);
+
+        reload(configManager, "{\"local\": {\"foo\": 4}}");
+        assertEquals(Arrays.asList(3, 4), subscriber.values);
+    }
+
+    @Test
+    public void publisher_givenChangeRevertedWithoutDemand_shouldNotRepeatDeliveredValue() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(1);
+        configManager.publisher(configManager.intKey("foo")).subscribe(subscriber);
+
+        reload(configManager, "{\"local\": {\"foo\": 2}}");
+        reload(configManager, "{\"local\": {\"foo\": 1}}");
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(1), subscriber.values);
+
+        reload(configManager, "{\"local\": {\"foo\": 2}}");
+        assertEquals(Arrays.asList(1, 2), subscriber.values);
+    }
+
+    @Test
+    public void publisher_givenRejectingExecutor_shouldSignalErrorAndKeepReloading() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(1);
+        Executor rejecting = command -> {
+            throw new RejectedExecutionException();
+        };
+        configManager.publisher(configManager.intKey("foo")::get, rejecting).subscribe(subscriber);
+        assertTrue(subscriber.error instanceof RejectedExecutionException);
+
+        AtomicInteger changes = new AtomicInteger();
+        configManager.addConfigChangedListener(manager -> changes.incrementAndGet());
+        reload(configManager, "{\"local\": {\"foo\": 2}}");
+        assertEquals(1, changes.get());
+        assertTrue(subscriber.values.isEmpty());
+    }
+
+    @Test
+    public void publisher_givenCategory_shouldOnlyPublishChangedCategory() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}, \"other\": {\"bar\": 1}}");
+        RecordingSubscriber<Map<String, Object>> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        configManager.publisher("local").subscribe(subscriber);
+
+        reload(configManager, "{\"local\": {\"foo\": 1}, \"other\": {\"bar\": 2}}");
+        reload(configManager, "{\"local\": {\"foo\": 2}, \"other\": {\"bar\": 2}}");
+        assertEquals(2, subscriber.values.size());
+        assertEquals(2.0, subscriber.values.get(1).get("foo"));
+    }
+
+    @Test
+    public void request_givenNonPositive_shouldSignalError() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(0);
+        configManager.publisher(configManager.intKey("foo")).subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        reload(configManager, "{\"local\": {\"foo\": 2}}");
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.values.isEmpty());
+    }
+
+    @Test
+    public void close_shouldCompleteSubscribers() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(1);
+        configManager.publisher(configManager.intKey("foo")).subscribe(subscriber);
+
+        configManager.close();
+        assertTrue(subscriber.completed);
+        assertEquals(Arrays.asList(1), subscriber.values);
+    }
+
+    private void reload(ConfigManager configManager, String json) {
+        configManager.configChanged(parser.parseJson(json));
+    }
+
+    private ConfigManager buildJson(String json) {
+        return new ConfigManager.ConfigManagerBuilder().withJson(json).build();
+    }
+
+    private static class RecordingSubscriber<T> implements ConfigFlow.Subscriber<T> {
+        private final long initialDemand;
+        private final List<T> values = new ArrayList<>();
+        private ConfigFlow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        private RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(ConfigFlow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            values.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.listener.ConfigChangeListener;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConfigLayerTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void getValue_givenSeveralLayers_shouldUseLayerWithHighestPrecedence() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson(ConfigLayer.REMOTE, "{\"local\": {\"foo\": \"remote\"}}")
+                .withJson("{\"local\": {\"foo\": \"default\", \"bar\": \"default\"}, \"other\": {\"baz\": 1}}")
+                .withJson(ConfigLayer.FILE, "{\"local\": {\"foo\": \"file\", \"bar\": \"file\"}}")
+                .build();
+
+        assertEquals("remote", configManager.getString("foo"));
+        assertEquals("file", configManager.getString("bar"));
+        assertEquals(1, configManager.getLong("other", "baz"));
+    }
+
+    @Test
+    public void configChanged_givenLayer_shouldOnlyReplaceThatLayer() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"local\": {\"foo\": \"default\", \"bar\": \"default\"}}")
+                .withJson(ConfigLayer.FILE, "{\"local\": {\"foo\": \"file\"}}")
+                .build();
+
+        configManager.configChanged(ConfigLayer.FILE, parser.parseJson("{\"local\": {\"bar\": \"file\"}}"));
+        assertEquals("default", configManager.getString("foo"));
+        assertEquals("file", configManager.getString("bar"));
+
+        configManager.configChanged(ConfigLayer.FILE, null);
+        assertEquals("default", configManager.getString("bar"));
+    }
+
+    @Test
+    public void configChanged_givenOtherLayerChanged_shouldReuseUnchangedCategories() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"local\": {\"foo\": \"default\"}, \"other\": {\"bar\": 1}}")
+                .withJson(ConfigLayer.REMOTE, "{\"local\": {\"foo\": \"remote\"}}")
+                .build();
+        ConfigSnapshot first = configManager.snapshot();
+
+        configManager.configChanged(ConfigLayer.REMOTE, parser.parseJson("{\"local\": {\"foo\": \"changed\"}}"));
+        assertSame(first.categories().get("other"), configManager.snapshot().categories().get("other"));
+        assertEquals("changed", configManager.getString("foo"));
+    }
+
+    @Test
+    public void configChanged_givenSeveralSourcesInLayer_shouldMergeSourcesInOrder() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"local\": {\"foo\": \"default\"}}")
+                .build();
+        ConfigChangeListener first = configManager.sourceListener(ConfigLayer.REMOTE);
+        ConfigChangeListener second = configManager.sourceListener(ConfigLayer.REMOTE);
+
+        second.configChanged(parser.parseJson("{\"local\": {\"foo\": \"second\"}}"));
+        first.configChanged(parser.parseJson("{\"local\": {\"foo\": \"first\", \"bar\": \"first\"}}"));
+        assertEquals("second", configManager.getString("foo"));
+        assertEquals("first", configManager.getString("bar"));
+
+        second.configChanged(null);
+        assertEquals("first", configManager.getString("foo"));
+    }
+
+    @Test
+    public void setOverride_givenValue_shouldOverrideEveryLayerUntilRemoved() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"local\": {\"foo\": \"default\"}}")
+                .withJson(ConfigLayer.REMOTE, "{\"local\": {\"foo\": \"remote\"}}")
+                .build();
+
+        configManager.setOverride("local", "foo", "override");
+        configManager.setOverride("other", "bar", 2.0);
+        assertEquals("override", configManager.getString("foo"));
+        assertEquals(2, configManager.getLong("other", "bar"));
+
+        configManager.removeOverride("local", "foo");
+        assertEquals("remote", configManager.getString("foo"));
+        assertEquals(2, configManager.getLong("other", "bar"));
+    }
+
+    @Test
+    public void withFileWatcher_givenDefaults_shouldOverrideDefaultsWithFile() throws Exception {
+        Path directory = Files.createTempDirectory("config");
+        Path file = directory.resolve("config.json");
+        Files.write(file, "{\"local\": {\"foo\": \"file\"}}".getBytes());
+
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"local\": {\"foo\": \"default\", \"bar\": \"default\"}}")
+                .withBlockingFileWatcher(directory.toString(), "config.json", 50, TimeUnit.MILLISECONDS)
+                .build();
+        CountDownLatch reloaded = new CountDownLatch(1);
+        configManager.addConfigChangedListener(manager -> reloaded.countDown());
+        Files.write(file, "{\"local\": {\"foo\": \"changed\"}}".getBytes());
+
+        assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+        assertEquals("changed", configManager.getString("foo"));
+        assertEquals("default", configManager.getString("bar"));
+    }
+}
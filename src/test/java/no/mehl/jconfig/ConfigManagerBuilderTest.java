@@ -1,6 +1,8 @@
 package no.mehl.jconfig;
 
+import no.mehl.jconfig.listener.ConfigChangeListener;
 import no.mehl.jconfig.listener.ConfigManagerListener;
+import no.mehl.jconfig.metrics.ConfigMetrics;
 import no.mehl.jconfig.pojo.Category;
 import no.mehl.jconfig.pojo.Config;
 import org.junit.Test;
@@ -10,8 +12,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 
@@ -63,4 +69,164 @@ public class ConfigManagerBuilderTest {
         assertFalse(failed.get());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void withBlockingFileWatcher_givenReplacedFile_shouldReloadOnce() throws Exception {
+        Path directory = Files.createTempDirectory("config");
+        Path config = directory.resolve("config.json");
+        Files.write(config, "{ \"local\": {\"foo\": \"faz\"}}".getBytes());
+
+        final ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withBlockingFileWatcher(directory.toString(), "config.json", 200, TimeUnit.MILLISECONDS)
+                .build();
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        final AtomicInteger reloads = new AtomicInteger();
+        configManager.addConfigChangedListener(manager -> {
+            reloads.incrementAndGet();
+            reloaded.countDown();
+        });
+
+        // Write next to the file and rename it into place, like editors do
+        Path tmp = directory.resolve("config.json.tmp");
+        Files.write(tmp, "{ \"local\": {\"foo\": \"farr\"}}".getBytes());
+        Files.move(tmp, config, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+        Thread.sleep(500);
+        assertEquals("farr", configManager.getString("foo"));
+        assertEquals(1, reloads.get());
+    }
+
+    @Test
+    public void withBlockingFileWatcher_givenChangedFile_shouldReportLatencyAfterListeners() throws Exception {
+        Path directory = Files.createTempDirectory("config");
+        Path config = directory.resolve("config.json");
+        Files.write(config, "{ \"local\": {\"foo\": \"faz\"}}".getBytes());
+        final AtomicBoolean notified = new AtomicBoolean();
+        final AtomicBoolean notifiedFirst = new AtomicBoolean();
+        final CountDownLatch reported = new CountDownLatch(1);
+        final AtomicLong latency = new AtomicLong(-1);
+
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withMetrics(new ConfigMetrics() {
+                    @Override
+                    public void fileReloaded(long latencyMillis) {
+                        notifiedFirst.set(notified.get());
+                        latency.set(latencyMillis);
+                        reported.countDown();
+                    }
+                })
+                .withBlockingFileWatcher(directory.toString(), "config.json", 50, TimeUnit.MILLISECONDS)
+                .build();
+        configManager.addConfigChangedListener(manager -> notified.set(true));
+
+        Files.write(config, "{ \"local\": {\"foo\": \"farr\"}}".getBytes());
+
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertTrue(notifiedFirst.get());
+        assertTrue(latency.get() >= 0 && latency.get() < 5000);
+        configManager.close();
+    }
+
+    @Test
+    public void withRemoteCache_givenUnreachableSource_shouldLoadCachedConfig() throws Exception {
+        Path directory = Files.createTempDirectory("config");
+        Path cache = directory.resolve("cache");
+        Path remote = directory.resolve("remote.json");
+        Files.write(remote, "{ \"local\": {\"foo\": \"faz\"}}".getBytes());
+        String url = remote.toUri().toString();
+
+        ConfigManager first = new ConfigManager.ConfigManagerBuilder()
+                .withRemoteCache(cache.toString())
+                .withRemoteFileWatcher(url, 1, TimeUnit.HOURS)
+                .build();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(Files.isDirectory(cache) && Files.list(cache).anyMatch(f -> f.toString().endsWith(".cache")))) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        first.close();
+        assertEquals("faz", first.getString("local", "foo"));
+
+        Files.delete(remote);
+        ConfigManager second = new ConfigManager.ConfigManagerBuilder()
+                .withReloadWindow(1, TimeUnit.HOURS)
+                .withRemoteCache(cache.toString())
+                .withRemoteFileWatcher(url, 1, TimeUnit.HOURS)
+                .build();
+        assertEquals("faz", second.getString("local", "foo"));
+        Thread.sleep(200);
+        assertEquals("faz", second.getString("local", "foo"));
+        second.close();
+    }
+
+    @Test
+    public void withSharedSources_givenSameFile_shouldShareWatcher() throws Exception {
+        Path directory = Files.createTempDirectory("config");
+        Path config = directory.resolve("config.json");
+        Files.write(config, "{ \"local\": {\"foo\": \"faz\"}}".getBytes());
+
+        ConfigManager first = new ConfigManager.ConfigManagerBuilder().withSharedSources()
+                .withFileWatcher(directory.toString(), "config.json", 100, TimeUnit.MILLISECONDS).build();
+        ConfigManager second = new ConfigManager.ConfigManagerBuilder().withSharedSources()
+                .withFileWatcher(directory.toString(), "config.json", 100, TimeUnit.MILLISECONDS).build();
+        assertEquals(1, SharedSources.INSTANCE.size());
+
+        Files.write(config, "{ \"local\": {\"foo\": \"farr\"}}".getBytes());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!second.snapshot().isLoaded()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals("farr", first.getString("foo"));
+        assertEquals("farr", second.getString("foo"));
+
+        first.close();
+        assertEquals(1, SharedSources.INSTANCE.size());
+        second.close();
+        assertEquals(0, SharedSources.INSTANCE.size());
+    }
+
+    @Test
+    public void acquire_givenSourceBeingCreated_shouldNotBlockOtherSources() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConfigChangeListener listener = config -> {
+        };
+        Thread slow = new Thread(() -> {
+            try {
+                SharedSources.INSTANCE.acquire("slow", source -> {
+                    creating.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return () -> {
+                    };
+                }, 1, TimeUnit.HOURS, 0, listener).close();
+            } catch (IOException e) {
+                logger.error("", e);
+            }
+        });
+        slow.start();
+        assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        SharedSources.INSTANCE.acquire("fast", source -> () -> {
+        }, 1, TimeUnit.HOURS, 0, listener).close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        slow.join(5000);
+        assertEquals(0, SharedSources.INSTANCE.size());
+    }
+
+    @Test
+    public void close_shouldShutDownPool() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withFileWatcher("/tmp", "missing.json", 1, TimeUnit.SECONDS).build();
+        configManager.close();
+        assertTrue(configManager.getPool().isShutdown());
+    }
+
+}
@@ -2,7 +2,11 @@ package no.mehl.jconfig;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -61,6 +65,142 @@ public class ConfigManagerTest {
         assertEquals(22123, values.get(1), 0.00000001);
     }
 
+    @Test
+    public void getLong_givenNumber_shouldReturnLong() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 5000000000}}");
+        assertEquals(5000000000L, configManager.getLong("foo"));
+    }
+
+    @Test
+    public void getDouble_givenNumber_shouldReturnDouble() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1.5}}");
+        assertEquals(1.5, configManager.getDouble("foo"), 0.00000001);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void getInt_givenString_shouldThrowException() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": \"bar\"}}");
+        configManager.getInt("local", "foo");
+    }
+
+    @Test
+    public void getStringList_givenRepeatedReads_shouldReturnSameList() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": [\"one\", \"two\"]}}");
+        assertSame(configManager.getStringList("foo"), configManager.getStringList("foo"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getStringList_givenModification_shouldThrowException() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": [\"one\", \"two\"]}}");
+        configManager.getStringList("foo").set(0, "three");
+    }
+
+    @Test
+    public void snapshot_givenReload_shouldKeepPreviousValues() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": \"bar\", \"baz\": 1}}");
+        ConfigSnapshot snapshot = configManager.snapshot();
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": \"qux\", \"baz\": 2}}"));
+
+        assertEquals("bar", snapshot.getString("foo"));
+        assertEquals(1, snapshot.getInt("baz"));
+        assertEquals("qux", configManager.getString("foo"));
+        assertEquals(2, configManager.snapshot().getInt("baz"));
+    }
+
+    @Test
+    public void snapshot_givenDefaultCategory_shouldReadFromCategory() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"prod\": {\"foo\": \"bar\"}}")
+                .withDefaultCategory("prod")
+                .build();
+        assertEquals("bar", configManager.snapshot().getString("foo"));
+    }
+
+    @Test
+    public void addConfigChangedListener_givenListenerAddedDuringReload_shouldNotFail() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": \"bar\"}}");
+        configManager.addConfigChangedListener(manager -> manager.addConfigChangedListener(m -> {}));
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": \"baz\"}}"));
+        assertEquals("baz", configManager.getString("foo"));
+    }
+
+    @Test
+    public void intKey_givenReload_shouldReturnNewValue() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        ConfigKey.IntKey key = configManager.intKey("foo");
+        assertEquals(1, key.getInt());
+
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": 2}}"));
+        assertEquals(2, key.getInt());
+    }
+
+    @Test
+    public void stringListKey_givenListInCategory_shouldReturnList() {
+        ConfigManager configManager = buildJson("{\"dev\": {\"foo\": [\"one\", \"two\"]}}");
+        assertEquals(Arrays.asList("one", "two"), configManager.stringListKey("dev", "foo").get());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void stringKey_givenNoConfig_shouldThrowException() {
+        buildStandard().stringKey("foo").get();
+    }
+
+    @Test
+    public void stringKey_givenKeyAddedOnReload_shouldReturnValue() {
+        ConfigManager configManager = buildJson("{\"local\": {}}");
+        ConfigKey.StringKey key = configManager.stringKey("foo");
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": \"bar\"}}"));
+        assertEquals("bar", key.get());
+    }
+
+    @Test
+    public void configChanged_givenFailingListener_shouldNotifyOtherListeners() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        AtomicInteger updates = new AtomicInteger();
+        ListenerStats stats = configManager.addConfigChangedListener(manager -> {
+            throw new IllegalStateException("listener failed");
+        });
+        configManager.addConfigChangedListener(manager -> updates.incrementAndGet());
+
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": 2}}"));
+        assertEquals(1, updates.get());
+        assertEquals(1, stats.getFailed());
+    }
+
+    @Test
+    public void addConfigChangedListener_givenExecutorBehind_shouldCoalesceReloads() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1}}");
+        List<Runnable> tasks = new ArrayList<>();
+        List<Integer> seen = new ArrayList<>();
+        ListenerStats stats = configManager.addConfigChangedListener(manager -> seen.add(manager.getInt("local", "foo")), tasks::add);
+
+        for (int i = 2; i <= 4; i++) {
+            configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": " + i + "}}"));
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(1, stats.getQueueDepth());
+        tasks.get(0).run();
+
+        assertEquals(Arrays.asList(4), seen);
+        assertEquals(2, stats.getCoalesced());
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    public void addConfigDiffListener_givenExecutorBehind_shouldMergeDiffs() {
+        ConfigManager configManager = buildJson("{\"local\": {\"foo\": 1, \"bar\": 1}}");
+        List<Runnable> tasks = new ArrayList<>();
+        List<ConfigDiff> diffs = new ArrayList<>();
+        configManager.addConfigDiffListener("local", null, diffs::add, tasks::add);
+
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": 2, \"bar\": 1}}"));
+        configManager.configChanged(new ConfigParser().parseJson("{\"local\": {\"foo\": 2, \"bar\": 2}}"));
+        tasks.get(0).run();
+
+        assertEquals(1, diffs.size());
+        assertEquals(new HashSet<>(Arrays.asList("foo", "bar")), diffs.get(0).getChangedKeys("local"));
+    }
+
     private ConfigManager buildStandard() {
         return new ConfigManager.ConfigManagerBuilder().build();
     }
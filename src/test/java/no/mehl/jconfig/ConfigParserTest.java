@@ -0,0 +1,57 @@
+package no.mehl.jconfig;
+
+import com.google.gson.Gson;
+import no.mehl.jconfig.pojo.Config;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConfigParserTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void parseJson_givenValues_shouldMatchGsonBinding() {
+        String json = "{\"local\": {\"s\": \"bar\", \"d\": 1, \"b\": true, \"l\": [1, \"two\"], \"m\": {\"x\": 2.5}, \"n\": null}, \"empty\": null}";
+        assertEquals(new Gson().fromJson(json, Config.class), parser.parseJson(json));
+    }
+
+    @Test
+    public void parseJson_givenEmptyDocument_shouldReturnNull() {
+        assertNull(parser.parseJson(""));
+        assertNull(parser.parseJson("  "));
+    }
+
+    @Test
+    public void parse_givenUtf8Stream_shouldParseJson() {
+        byte[] json = "{\"local\": {\"foo\": [\"bl\u00e5b\u00e6r\"]}}".getBytes(StandardCharsets.UTF_8);
+        Config config = parser.parse(new ByteArrayInputStream(json));
+        assertEquals(Arrays.asList("bl\u00e5b\u00e6r"), config.get("local").get("foo"));
+    }
+
+    @Test
+    public void parseJson_givenNestedObject_shouldReturnMap() {
+        Config config = parser.parseJson("{\"local\": {\"foo\": {\"bar\": \"baz\"}}}");
+        assertEquals("baz", ((Map<?, ?>) config.get("local").get("foo")).get("bar"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void parseJson_givenCategoryNotObject_shouldThrowException() {
+        parser.parseJson("{\"local\": 1}");
+    }
+
+    @Test(expected = ConfigException.class)
+    public void parseJson_givenTrailingContent_shouldThrowException() {
+        parser.parseJson("{\"local\": {}} {}");
+    }
+
+    @Test(expected = ConfigException.class)
+    public void parseFilePath_givenMissingResource_shouldThrowException() {
+        parser.parseFilePath("does-not-exist.json");
+    }
+}
@@ -0,0 +1,65 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.pojo.Config;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ConfigPatchTest {
+
+    private final ConfigParser parser = new ConfigParser();
+    private final Config config = parser.parseJson("{\"local\": {\"foo\": \"bar\", \"map\": {\"a\": 1, \"b\": 2}}, \"other\": {\"baz\": 1}}");
+
+    @Test
+    public void applyMergePatch_givenPatch_shouldOnlyChangePatchedValues() {
+        Config patched = parser.applyMergePatch(config, json("{\"local\": {\"foo\": \"qux\", \"map\": {\"b\": null, \"c\": 3}, \"new\": true}, \"added\": {\"x\": 1}}"));
+
+        assertEquals(parser.parseJson("{\"local\": {\"foo\": \"qux\", \"map\": {\"a\": 1, \"c\": 3}, \"new\": true}, " +
+                "\"other\": {\"baz\": 1}, \"added\": {\"x\": 1}}"), patched);
+        assertSame(config.get("other"), patched.get("other"));
+        assertEquals("bar", config.get("local").get("foo"));
+    }
+
+    @Test
+    public void applyMergePatch_givenNullCategoryOrKey_shouldRemoveIt() {
+        Config patched = parser.applyMergePatch(config, json("{\"other\": null, \"local\": {\"map\": null}}"));
+        assertEquals(parser.parseJson("{\"local\": {\"foo\": \"bar\"}}"), patched);
+    }
+
+    @Test
+    public void applyJsonPatch_givenOperations_shouldApplyThemInOrder() {
+        Config patched = parser.applyJsonPatch(config, json("[" +
+                "{\"op\": \"test\", \"path\": \"/local/foo\", \"value\": \"bar\"}," +
+                "{\"op\": \"replace\", \"path\": \"/local/foo\", \"value\": \"qux\"}," +
+                "{\"op\": \"add\", \"path\": \"/local/new\", \"value\": [1, 2]}," +
+                "{\"op\": \"remove\", \"path\": \"/local/map\"}," +
+                "{\"op\": \"add\", \"path\": \"/a~1b\", \"value\": {\"x\": \"y\"}}]"));
+
+        assertEquals(parser.parseJson("{\"local\": {\"foo\": \"qux\", \"new\": [1, 2]}, \"other\": {\"baz\": 1}, \"a/b\": {\"x\": \"y\"}}"), patched);
+        assertSame(config.get("other"), patched.get("other"));
+        assertEquals("bar", config.get("local").get("foo"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void applyJsonPatch_givenFailingTest_shouldThrowException() {
+        parser.applyJsonPatch(config, json("[{\"op\": \"test\", \"path\": \"/local/foo\", \"value\": \"baz\"}]"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void applyJsonPatch_givenUnsupportedOperation_shouldThrowException() {
+        parser.applyJsonPatch(config, json("[{\"op\": \"move\", \"from\": \"/local/foo\", \"path\": \"/local/bar\"}]"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void applyJsonPatch_givenReplaceOfMissingKey_shouldThrowException() {
+        parser.applyJsonPatch(config, json("[{\"op\": \"replace\", \"path\": \"/local/missing\", \"value\": 1}]"));
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,78 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.listener.ConfigChangeListener;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConfigReloadTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void sourceChanged_givenReloadWindow_shouldParseAndPublishLatestOnce() throws Exception {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"local\": {\"foo\": 0}}")
+                .withReloadWindow(200, TimeUnit.MILLISECONDS)
+                .build();
+        AtomicInteger parses = new AtomicInteger();
+        AtomicInteger reloads = new AtomicInteger();
+        CountDownLatch reloaded = new CountDownLatch(1);
+        configManager.addConfigChangedListener(manager -> {
+            reloads.incrementAndGet();
+            reloaded.countDown();
+        });
+        ConfigChangeListener source = configManager.sourceListener(ConfigLayer.REMOTE);
+
+        for (int i = 1; i <= 5; i++) {
+            String json = "{\"local\": {\"foo\": " + i + "}}";
+            source.sourceChanged(() -> {
+                parses.incrementAndGet();
+                return parser.parseJson(json);
+            });
+        }
+        assertEquals(0, configManager.getInt("local", "foo"));
+
+        assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+        assertEquals(5, configManager.getInt("local", "foo"));
+        assertEquals(1, parses.get());
+        Thread.sleep(300);
+        assertEquals(1, reloads.get());
+        configManager.close();
+    }
+
+    @Test
+    public void sourceChanged_givenMinPublishInterval_shouldDelayPublish() throws Exception {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withMinPublishInterval(300, TimeUnit.MILLISECONDS)
+                .build();
+        ConfigChangeListener source = configManager.sourceListener(ConfigLayer.REMOTE);
+
+        source.configChanged(parser.parseJson("{\"local\": {\"foo\": 1}}"));
+        assertEquals(1, configManager.getInt("local", "foo"));
+
+        source.configChanged(parser.parseJson("{\"local\": {\"foo\": 2}}"));
+        assertEquals(1, configManager.getInt("local", "foo"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (configManager.getInt("local", "foo") != 2) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        configManager.close();
+    }
+
+    @Test
+    public void sourceChanged_givenInvalidConfig_shouldKeepPreviousConfigOfSource() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().build();
+        ConfigChangeListener source = configManager.sourceListener(ConfigLayer.REMOTE);
+
+        source.configChanged(parser.parseJson("{\"local\": {\"foo\": 1}}"));
+        source.sourceChanged(() -> parser.parseJson("{\"local\": {\"foo\": 2"));
+        assertEquals(1, configManager.getInt("local", "foo"));
+    }
+}
@@ -0,0 +1,92 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.listener.ConfigChangeListener;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConfigSchemaTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    private final ConfigSchema schema = new ConfigSchema.ConfigSchemaBuilder()
+            .withString("server", "host", true)
+            .withInt("server", "port", true, 1, 65535)
+            .withDouble("server", "ratio", false, 0, 1)
+            .withIntList("server", "retries", false, 0, 10)
+            .build();
+
+    @Test
+    public void validate_givenValidConfig_shouldReturnNoErrors() {
+        ConfigSnapshot snapshot = compile("{\"server\": {\"host\": \"h\", \"port\": 80, \"retries\": [1, 2], \"other\": \"x\"}}");
+        assertTrue(schema.validate(snapshot, null).isEmpty());
+    }
+
+    @Test
+    public void validate_givenInvalidValues_shouldReturnEveryError() {
+        ConfigSnapshot snapshot = compile("{\"server\": {\"port\": 80.5, \"ratio\": 2, \"retries\": [1, 20]}}");
+        List<String> errors = schema.validate(snapshot, null);
+        assertEquals(4, errors.size());
+        assertTrue(errors.get(0).startsWith("server.host"));
+        assertTrue(errors.get(1).startsWith("server.port"));
+    }
+
+    @Test
+    public void validate_givenMissingRequiredCategory_shouldReturnError() {
+        assertEquals(1, schema.validate(compile("{\"client\": {}}"), null).size());
+    }
+
+    @Test
+    public void validate_givenReusedCategory_shouldSkipCategory() {
+        ConfigSnapshot previous = compile("{\"server\": {\"port\": \"eighty\"}}");
+        ConfigSnapshot next = ConfigSnapshot.compile(parser.parseJson("{\"server\": {\"port\": \"eighty\"}}"), "local", previous);
+        assertTrue(schema.validate(next, previous).isEmpty());
+    }
+
+    @Test
+    public void sourceChanged_givenInvalidConfig_shouldKeepLastValidConfig() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"server\": {\"host\": \"h\", \"port\": 80}}")
+                .withSchema(schema)
+                .build();
+        ConfigChangeListener source = configManager.sourceListener(ConfigLayer.REMOTE);
+
+        source.configChanged(parser.parseJson("{\"server\": {\"port\": 0}}"));
+        assertEquals(80, configManager.getInt("server", "port"));
+
+        configManager.setOverride("server", "ratio", 0.5);
+        assertEquals(80, configManager.getInt("server", "port"));
+        assertEquals(0.5, configManager.getDouble("server", "ratio"), 0);
+    }
+
+    @Test
+    public void withConfig_givenInvalidConfig_shouldKeepLayerUnchanged() {
+        ConfigManager.ConfigManagerBuilder builder = new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"server\": {\"host\": \"h\", \"port\": 80}}")
+                .withSchema(schema);
+        try {
+            builder.withJson(ConfigLayer.OVERRIDES, "{\"server\": {\"port\": 0}}");
+            fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            assertTrue(e.getMessage().contains("server.port"));
+        }
+        ConfigManager configManager = builder.build();
+
+        configManager.setOverride("server", "ratio", 0.5);
+        assertEquals(80, configManager.getInt("server", "port"));
+        assertEquals(0.5, configManager.getDouble("server", "ratio"), 0);
+    }
+
+    @Test(expected = ConfigException.class)
+    public void withSchema_givenInvalidConfig_shouldThrowException() {
+        new ConfigManager.ConfigManagerBuilder()
+                .withJson("{\"server\": {\"host\": \"h\"}}")
+                .withSchema(schema);
+    }
+
+    private ConfigSnapshot compile(String json) {
+        return ConfigSnapshot.compile(parser.parseJson(json), "local");
+    }
+}
@@ -0,0 +1,81 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConfigSnapshotQueryTest {
+
+    private static final String JSON = "{\"local\": {\"feature.b\": true, \"feature.a\": 1, \"featurex\": 2, \"host\": \"h\", \"list\": [\"x\", {\"nested\": [1]}]}}";
+
+    @Test
+    public void getPrefix_shouldReturnKeysWithPrefixInOrder() {
+        Map<String, Object> features = build(ConfigStorage.HASH_MAP).getPrefix("local", "feature.");
+        assertEquals(Arrays.asList("feature.a", "feature.b"), new ArrayList<>(features.keySet()));
+        assertEquals(1.0, features.get("feature.a"));
+        assertNull(features.get("host"));
+        assertFalse(features.containsKey("featurex"));
+    }
+
+    @Test
+    public void getRange_shouldReturnKeysInRange() {
+        ConfigManager configManager = build(ConfigStorage.COMPACT);
+        assertEquals(Arrays.asList("featurex", "host"), new ArrayList<>(configManager.getRange("local", "featurex", "list").keySet()));
+        assertEquals(Arrays.asList("host", "list"), new ArrayList<>(configManager.getRange("local", "g", null).keySet()));
+        assertTrue(configManager.getRange("local", "z", "a").isEmpty());
+    }
+
+    @Test
+    public void getValues_shouldLeaveOutMissingKeys() {
+        Map<String, Object> values = build(ConfigStorage.HASH_MAP).getValues("local", "host", "missing", "feature.b");
+        assertEquals(Arrays.asList("host", "feature.b"), new ArrayList<>(values.keySet()));
+        assertEquals(true, values.get("feature.b"));
+    }
+
+    @Test
+    public void getCategory_shouldReturnReadOnlyView() {
+        Map<String, Object> category = build(ConfigStorage.HASH_MAP).getCategory("local");
+        assertEquals(5, category.size());
+        try {
+            category.put("host", "other");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        List<?> list = (List<?>) category.get("list");
+        assertReadOnly(() -> list.remove(0));
+        Map<?, ?> nested = (Map<?, ?>) list.get(1);
+        assertReadOnly(nested::clear);
+        assertReadOnly(() -> ((List<?>) nested.get("nested")).clear());
+        assertReadOnly(() -> nested.entrySet().iterator().next().setValue(null));
+    }
+
+    private static void assertReadOnly(Runnable modification) {
+        try {
+            modification.run();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void getPrefix_givenLazyParsing_shouldIndexOnFirstScan() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withLazyParsing().withJson(JSON).build();
+        assertEquals(2, configManager.getPrefix("local", "feature.").size());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void getCategory_givenMissingCategory_shouldThrowException() {
+        build(ConfigStorage.HASH_MAP).getCategory("dev");
+    }
+
+    private ConfigManager build(ConfigStorage storage) {
+        return new ConfigManager.ConfigManagerBuilder().withStorage(storage).withJson(JSON).build();
+    }
+}
@@ -0,0 +1,83 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ConfigStorageTest {
+
+    private static final String JSON = "{\"local\": {\"s\": \"bar\", \"i\": 42, \"d\": 1.5, \"b\": true, \"n\": null, " +
+            "\"l\": [1, 2], \"sl\": [\"a\", \"b\"]}, \"other\": {\"foo\": \"baz\"}}";
+
+    @Test
+    public void getValue_givenCompactStorage_shouldReturnSameValues() {
+        for (ConfigStorage storage : ConfigStorage.values()) {
+            ConfigManager configManager = build(storage, JSON);
+            assertEquals("bar", configManager.getString("s"));
+            assertEquals(42, configManager.getLong("i"));
+            assertEquals(1.5, configManager.getDouble("d"), 0);
+            assertEquals(Arrays.asList(1, 2), configManager.getIntList("l"));
+            assertEquals(Arrays.asList("a", "b"), configManager.getStringList("sl"));
+            assertEquals("baz", configManager.getString("other", "foo"));
+        }
+    }
+
+    @Test
+    public void getValue_givenCompactStorageAndWrongType_shouldThrowSameException() {
+        for (ConfigStorage storage : ConfigStorage.values()) {
+            ConfigManager configManager = build(storage, JSON);
+            assertEquals("Unable to cast value=true of type class java.lang.Boolean", message(() -> configManager.getString("b")));
+            assertEquals("Value was null", message(() -> configManager.getString("n")));
+            assertEquals("Unable to cast value=bar of type class java.lang.String", message(() -> configManager.getStringList("s")));
+        }
+    }
+
+    @Test
+    public void configChanged_givenCompactStorage_shouldReuseUnchangedCategories() {
+        for (ConfigStorage storage : ConfigStorage.values()) {
+            ConfigManager configManager = build(storage, JSON);
+            ConfigSnapshot first = configManager.snapshot();
+
+            configManager.configChanged(new ConfigParser().parseJson(JSON.replace("baz", "qux")));
+            assertSame(first.categories().get("local"), configManager.snapshot().categories().get("local"));
+            assertNotSame(first.categories().get("other"), configManager.snapshot().categories().get("other"));
+            assertEquals("qux", configManager.getString("other", "foo"));
+        }
+    }
+
+    @Test
+    public void configDiff_givenCompactStorage_shouldOnlyReportChangedKeys() {
+        ConfigManager configManager = build(ConfigStorage.COMPACT, JSON);
+        ConfigSnapshot first = configManager.snapshot();
+        configManager.configChanged(new ConfigParser().parseJson(JSON.replace("42", "43")));
+
+        ConfigDiff diff = ConfigDiff.between(first, configManager.snapshot());
+        assertEquals(Arrays.asList("i"), Arrays.asList(diff.getChangedKeys("local").toArray()));
+        assertTrue(diff.getAddedKeys("local").isEmpty());
+    }
+
+    @Test
+    public void withStorage_givenLoadedConfig_shouldStoreItAgain() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withJson(JSON)
+                .withStorage(ConfigStorage.OFF_HEAP)
+                .build();
+        assertTrue(configManager.snapshot().categories().get("local") instanceof CompactCategory);
+        assertEquals("bar", configManager.getString("s"));
+    }
+
+    private static ConfigManager build(ConfigStorage storage, String json) {
+        return new ConfigManager.ConfigManagerBuilder().withStorage(storage).withJson(json).build();
+    }
+
+    private static String message(Runnable read) {
+        try {
+            read.run();
+        } catch (ConfigException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("Expected ConfigException");
+    }
+}
@@ -0,0 +1,126 @@
+package no.mehl.jconfig;
+
+import no.mehl.jconfig.metrics.ConfigMetrics;
+import no.mehl.jconfig.pojo.Config;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LazyParsingTest {
+
+    private static final String JSON = "{\"local\": {\"foo\": \"bar\", \"list\": [1, {\"a\": \"}\"}]}, " +
+            "\"other\": {\"baz\": 1}, \"empty\": {}, \"none\": null}";
+
+    private final ConfigParser parser = new ConfigParser(ConfigMetrics.NOOP, true);
+
+    @Test
+    public void parseJson_givenLazyParser_shouldParseSameConfig() {
+        assertEquals(new ConfigParser().parseJson(JSON), parser.parseJson(JSON));
+    }
+
+    @Test
+    public void parseJson_givenLazyParser_shouldNotParseCategoriesBeforeRead() {
+        Config config = parser.parseJson(JSON);
+        RawCategory local = (RawCategory) config.get("local");
+        RawCategory other = (RawCategory) config.get("other");
+
+        assertEquals("bar", local.get("foo"));
+        assertTrue(local.isParsed());
+        assertFalse(other.isParsed());
+    }
+
+    @Test
+    public void parseJson_givenCommentsOrEmptyDocument_shouldParseAsWhole() {
+        Config config = parser.parseJson("{\"local\": {\"foo\": \"bar\" // comment\n}}");
+        assertFalse(config.get("local") instanceof RawCategory);
+        assertEquals("bar", config.get("local").get("foo"));
+        assertNull(parser.parseJson(""));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void parseJson_givenDuplicateCategory_shouldThrowException() {
+        parser.parseJson("{\"local\": {}, \"local\": {}}");
+    }
+
+    @Test
+    public void configChanged_givenUnchangedCategoryJson_shouldReuseCompiledCategory() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withLazyParsing().withJson(JSON).build();
+        assertEquals("bar", configManager.getString("foo"));
+        ConfigSnapshot first = configManager.snapshot();
+
+        Config changed = parser.parseJson(JSON.replace("\"baz\": 1", "\"baz\": 2"));
+        configManager.configChanged(changed);
+
+        assertSame(first.categories().get("local"), configManager.snapshot().categories().get("local"));
+        assertFalse(((RawCategory) changed.get("local")).isParsed());
+        assertFalse(((RawCategory) changed.get("other")).isParsed());
+        assertEquals(2, configManager.getLong("other", "baz"));
+        assertEquals(Arrays.asList("baz"), Arrays.asList(ConfigDiff.between(first, configManager.snapshot()).getChangedKeys("other").toArray()));
+    }
+
+    @Test
+    public void configChanged_givenChangedRawCategory_shouldCompileChange() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withLazyParsing().withJson(JSON).build();
+        assertEquals(1, configManager.getLong("other", "baz"));
+
+        Config changed = parser.parseJson(JSON);
+        changed.get("other").merge("baz", 2.0, (older, newer) -> newer);
+        changed.get("other").computeIfAbsent("added", key -> "value");
+        configManager.configChanged(changed);
+
+        assertEquals(2, configManager.getLong("other", "baz"));
+        assertEquals("value", configManager.getString("other", "added"));
+        assertFalse(parser.parseJson(JSON).equals(changed));
+    }
+
+    @Test
+    public void configChanged_givenInvalidJsonInReadCategory_shouldKeepPreviousConfig() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withLazyParsing().withJson(JSON).build();
+        assertEquals("bar", configManager.getString("foo"));
+        ConfigSnapshot first = configManager.snapshot();
+
+        configManager.configChanged(parser.parseJson(JSON.replace("\"foo\": \"bar\"", "\"foo\": ")));
+
+        assertSame(first, configManager.snapshot());
+        assertEquals("bar", configManager.getString("foo"));
+    }
+
+    @Test
+    public void getString_givenInvalidJsonInUnreadCategory_shouldParseOnce() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withLazyParsing()
+                .withJson("{\"local\": {\"foo\": \"bar\"}, \"broken\": {\"foo\": }}").build();
+        ConfigException first = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                configManager.getString("broken", "foo");
+                fail("Expected ConfigException");
+            } catch (ConfigException e) {
+                assertTrue(first == null || first == e);
+                first = e;
+            }
+        }
+        assertEquals("bar", configManager.getString("foo"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void entrySet_givenRawCategory_shouldBeReadOnly() {
+        parser.parseJson(JSON).get("local").entrySet().clear();
+    }
+
+    @Test
+    public void getValue_givenInvalidCategory_shouldOnlyFailForThatCategory() {
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder().withLazyParsing()
+                .withJson("{\"local\": {\"foo\": \"bar\"}, \"broken\": {\"baz\": 1 2}}")
+                .build();
+
+        assertEquals("bar", configManager.getString("foo"));
+        try {
+            configManager.getString("broken", "baz");
+            fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            assertTrue(e.getMessage().contains("category=broken"));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LookupCacheTest {
+
+    private final ConfigParser parser = new ConfigParser();
+
+    @Test
+    public void get_givenRepeatedReads_shouldHitCache() {
+        ConfigManager configManager = build(ConfigStorage.COMPACT);
+        assertEquals(1, configManager.getInt("local", "foo"));
+        assertEquals(1.0, configManager.getDouble("local", "foo"), 0);
+        assertEquals(1, configManager.getInt("local", "foo"));
+        assertEquals(1, configManager.getLookupCache().getMisses());
+        assertEquals(2, configManager.getLookupCache().getHits());
+    }
+
+    @Test
+    public void get_givenReload_shouldReadNewSnapshot() {
+        ConfigManager configManager = build(ConfigStorage.COMPACT);
+        assertEquals("b", configManager.getString("local", "bar"));
+        configManager.configChanged(parser.parseJson("{\"local\": {\"foo\": 2}}"));
+        assertEquals(2, configManager.getInt("local", "foo"));
+        assertEquals(0, configManager.getLookupCache().getHits());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void get_givenCachedMissingCategory_shouldThrowException() {
+        ConfigManager configManager = build(ConfigStorage.OFF_HEAP);
+        try {
+            configManager.getInt("other", "foo");
+        } catch (ConfigException e) {
+            configManager.getInt("other", "foo");
+        }
+    }
+
+    @Test
+    public void slot_givenNamesDifferingInLastCharacter_shouldNotCollide() {
+        LookupCache cache = new LookupCache(1024);
+        Set<Integer> slots = new HashSet<>();
+        for (int category = 0; category < 10; category++) {
+            for (int key = 0; key < 10; key++) {
+                assertTrue(slots.add(cache.slot("category" + category, "key" + key)));
+            }
+        }
+    }
+
+    @Test
+    public void lookup_givenHashMapStorage_shouldNotUseCache() {
+        assertNull(build(ConfigStorage.HASH_MAP).getLookupCache());
+    }
+
+    @Test
+    public void getSize_shouldRoundUpToPowerOfTwo() {
+        assertEquals(128, new LookupCache(100).getSize());
+        assertEquals(1, new LookupCache(1).getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withLookupCache_givenNonPositiveSize_shouldThrowException() {
+        new ConfigManager.ConfigManagerBuilder().withLookupCache(0);
+    }
+
+    private ConfigManager build(ConfigStorage storage) {
+        return new ConfigManager.ConfigManagerBuilder()
+                .withStorage(storage)
+                .withLookupCache(64)
+                .withJson("{\"local\": {\"foo\": 1, \"bar\": \"b\"}}")
+                .build();
+    }
+}
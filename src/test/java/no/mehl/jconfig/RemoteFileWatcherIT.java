@@ -1,7 +1,13 @@
 package no.mehl.jconfig;
 
+import com.google.gson.Gson;
+import no.mehl.jconfig.pojo.Category;
+import no.mehl.jconfig.pojo.Config;
+import no.mehl.jconfig.watcher.PushRemoteFileWatcher;
+import no.mehl.jconfig.watcher.RemoteFileWatcher;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletHandler;
+import org.junit.After;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +16,26 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -22,12 +45,15 @@ public class RemoteFileWatcherIT {
 
     private static final Logger logger = LoggerFactory.getLogger(RemoteFileWatcherIT.class);
 
+    private final List<Closeable> closeables = new ArrayList<>();
+    private final List<Server> servers = new ArrayList<>();
+
     @Test
     public void run_withServerResponse_shouldRetrieveConfig() throws Exception {
         int port = randomPort();
-        Server server = createJettyServer(port, SingleResponseServlet.class);
+        createJettyServer(port, SingleResponseServlet.class);
 
-        ConfigManager manager = new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 1, TimeUnit.SECONDS).build();
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 1, TimeUnit.SECONDS).build());
         final AtomicInteger updates = new AtomicInteger();
 
         manager.addConfigChangedListener(configManager -> {
@@ -38,16 +64,14 @@ public class RemoteFileWatcherIT {
         waitForManager(manager);
 
         assertEquals(1, updates.get());
-
-        stopServer(server);
     }
 
     @Test
     public void multipleRun_withSameServerResponse_shouldOnlyChangeConfigOnce() throws Exception {
         int port = randomPort();
-        Server server = createJettyServer(port, SingleResponseServlet.class);
+        createJettyServer(port, SingleResponseServlet.class);
 
-        ConfigManager manager = new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 2, TimeUnit.SECONDS).build();
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 2, TimeUnit.SECONDS).build());
         final AtomicInteger updates = new AtomicInteger();
 
         manager.addConfigChangedListener(configManager -> {
@@ -57,16 +81,14 @@ public class RemoteFileWatcherIT {
 
         waitForManager(manager);
         assertEquals(1, updates.get());
-
-        stopServer(server);
     }
 
     @Test
     public void multipleRun_withIncrementingServerResponse_shouldChangeConfig() throws Exception {
         int port = randomPort();
-        Server server = createJettyServer(port, IncrementingResponseServlet.class);
+        createJettyServer(port, IncrementingResponseServlet.class);
 
-        ConfigManager manager = new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 500, TimeUnit.MILLISECONDS).build();
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 500, TimeUnit.MILLISECONDS).build());
         final AtomicInteger updates = new AtomicInteger();
 
         manager.addConfigChangedListener(configManager -> {
@@ -79,7 +101,195 @@ public class RemoteFileWatcherIT {
 
         waitForManager(manager);
         assertEquals(2, updates.get());
-        stopServer(server);
+    }
+
+    @Test
+    public void multipleRun_withETag_shouldOnlyDownloadOnce() throws Exception {
+        int port = randomPort();
+        createJettyServer(port, ETagResponseServlet.class);
+        ETagResponseServlet.requests.set(0);
+        ETagResponseServlet.fullResponses.set(0);
+
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 500, TimeUnit.MILLISECONDS).build());
+        final AtomicInteger updates = new AtomicInteger();
+        manager.addConfigChangedListener(configManager -> updates.incrementAndGet());
+
+        waitForManager(manager);
+        assertEquals(1, updates.get());
+        assertEquals(1, ETagResponseServlet.fullResponses.get());
+        assertTrue(ETagResponseServlet.requests.get() > 1);
+    }
+
+    @Test
+    public void run_withCache_shouldRevalidateCachedConfig() throws Exception {
+        int port = randomPort();
+        createJettyServer(port, ETagResponseServlet.class);
+        ETagResponseServlet.requests.set(0);
+        ETagResponseServlet.fullResponses.set(0);
+        Path cache = Files.createTempDirectory("config-cache");
+
+        ConfigManager first = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteCache(cache.toString())
+                .withRemoteFileWatcher("http://localhost:" + port, 500, TimeUnit.MILLISECONDS).build());
+        waitForManager(first);
+        first.close();
+
+        ConfigManager second = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteCache(cache.toString())
+                .withRemoteFileWatcher("http://localhost:" + port, 500, TimeUnit.MILLISECONDS).build());
+        assertEquals("baz", second.getString("foo", "bar"));
+        waitForManager(second);
+        assertEquals(1, ETagResponseServlet.fullResponses.get());
+    }
+
+    @Test
+    public void run_withGzipResponse_shouldRetrieveConfig() throws Exception {
+        int port = randomPort();
+        GzipResponseServlet.acceptEncoding = null;
+        createJettyServer(port, GzipResponseServlet.class);
+
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder().withRemoteFileWatcher("http://localhost:" + port, 1, TimeUnit.SECONDS).build());
+        final AtomicInteger updates = new AtomicInteger();
+        manager.addConfigChangedListener(configManager -> {
+            assertEquals("baz", configManager.getString("foo", "bar"));
+            updates.incrementAndGet();
+        });
+
+        waitForManager(manager);
+        assertEquals(1, updates.get());
+        assertTrue(GzipResponseServlet.acceptEncoding.contains("gzip"));
+    }
+
+    @Test
+    public void run_withHangingServer_shouldReadOtherSources() throws Exception {
+        int port = randomPort();
+        createJettyServer(port, SingleResponseServlet.class);
+        int hangingPort = randomPort();
+        HangingResponseServlet.entered = new CountDownLatch(1);
+        HangingResponseServlet.release = new CountDownLatch(1);
+        createJettyServer(hangingPort, HangingResponseServlet.class);
+
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder()
+                .withTimeouts(10, 10, TimeUnit.SECONDS)
+                .withRemoteFileWatcher("http://localhost:" + hangingPort, 10, TimeUnit.SECONDS)
+                .withRemoteFileWatcher("http://localhost:" + port, 10, TimeUnit.SECONDS)
+                .build());
+
+        assertTrue(HangingResponseServlet.entered.await(5, TimeUnit.SECONDS));
+        await(() -> manager.snapshot().isLoaded());
+        assertEquals(1, HangingResponseServlet.release.getCount());
+        assertEquals("baz", manager.getString("foo", "bar"));
+
+        HangingResponseServlet.release.countDown();
+    }
+
+    @Test
+    public void push_withEventStream_shouldApplyPushedConfig() throws Exception {
+        int port = randomPort();
+        createJettyServer(port, EventStreamServlet.class);
+
+        final List<String> values = new CopyOnWriteArrayList<>();
+        final CountDownLatch pushed = new CountDownLatch(2);
+        PushRemoteFileWatcher watcher = closeAfter(new PushRemoteFileWatcher("http://localhost:" + port, config -> {
+            values.add((String) config.get("foo").get("bar"));
+            pushed.countDown();
+        }, 1, TimeUnit.SECONDS));
+        Thread thread = new Thread(watcher);
+        thread.start();
+
+        assertTrue(pushed.await(2, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("baz", "qux"), values.subList(0, 2));
+
+        watcher.close();
+        thread.join(1000);
+    }
+
+    @Test
+    public void push_withDisconnectingServer_shouldReconnect() throws Exception {
+        int port = randomPort();
+        EventStreamServlet.connections.set(0);
+        createJettyServer(port, EventStreamServlet.class);
+
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder().withPushRemoteWatcher("http://localhost:" + port, 100, TimeUnit.MILLISECONDS).build());
+        await(() -> EventStreamServlet.connections.get() > 1);
+        await(() -> manager.snapshot().isLoaded() && "qux".equals(manager.getString("foo", "bar")));
+    }
+
+    @Test
+    public void push_withSameDocumentPushedAndPolled_shouldApplyOnce() throws Exception {
+        int port = randomPort();
+        SameDocumentServlet.connections = new CountDownLatch(2);
+        SameDocumentServlet.polls = new CountDownLatch(2);
+        createJettyServer(port, SameDocumentServlet.class);
+
+        final AtomicInteger updates = new AtomicInteger();
+        PushRemoteFileWatcher watcher = closeAfter(new PushRemoteFileWatcher("http://localhost:" + port, config -> updates.incrementAndGet(), 100, TimeUnit.MILLISECONDS)
+                .withBackoff(300, 300, TimeUnit.MILLISECONDS));
+        Thread thread = new Thread(watcher);
+        thread.start();
+
+        assertTrue(SameDocumentServlet.connections.await(5, TimeUnit.SECONDS));
+        assertTrue(SameDocumentServlet.polls.await(5, TimeUnit.SECONDS));
+        assertEquals(1, updates.get());
+
+        watcher.close();
+        thread.join(1000);
+    }
+
+    @Test
+    public void push_withJsonResponse_shouldFallBackToPolling() throws Exception {
+        int port = randomPort();
+        createJettyServer(port, IncrementingResponseServlet.class);
+
+        final CountDownLatch polled = new CountDownLatch(2);
+        PushRemoteFileWatcher watcher = closeAfter(new PushRemoteFileWatcher("http://localhost:" + port, config -> polled.countDown(), 100, TimeUnit.MILLISECONDS)
+                .withBackoff(1, 1, TimeUnit.SECONDS));
+        Thread thread = new Thread(watcher);
+        thread.start();
+
+        assertTrue(polled.await(2, TimeUnit.SECONDS));
+
+        watcher.close();
+        thread.join(1000);
+    }
+
+    @Test
+    public void run_withDeltaServer_shouldApplyPatches() throws Exception {
+        int port = randomPort();
+        DeltaResponseServlet.requests.set(0);
+        DeltaResponseServlet.patches.set(0);
+        createJettyServer(port, DeltaResponseServlet.class);
+
+        ConfigManager manager = closeAfter(new ConfigManager.ConfigManagerBuilder()
+                .withRemoteDeltas()
+                .withJitter(0)
+                .withRemoteFileWatcher("http://localhost:" + port, 200, TimeUnit.MILLISECONDS)
+                .build());
+        await(() -> manager.snapshot().isLoaded() && "v3".equals(manager.getString("foo", "bar")));
+
+        assertEquals(2, DeltaResponseServlet.patches.get());
+        assertEquals(1, manager.getLong("other", "baz"));
+    }
+
+    @After
+    public void tearDown() {
+        for (Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.info("Failed to close", e);
+            }
+        }
+        for (Server server : servers) {
+            stopServer(server);
+        }
+    }
+
+    /**
+     * Closes a manager or watcher after the test, before the servers are stopped, so it does not keep polling
+     * a stopped server.
+     */
+    private <T extends Closeable> T closeAfter(T closeable) {
+        closeables.add(closeable);
+        return closeable;
     }
 
     private void stopServer(Server server) {
@@ -95,6 +305,17 @@ public class RemoteFileWatcherIT {
         }.start();
     }
 
+    /**
+     * Waits until the condition holds, failing after five seconds.
+     */
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for condition", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
     private void waitForManager(ConfigManager manager) {
         try {
             manager.getPool().awaitTermination(2, TimeUnit.SECONDS);
@@ -113,7 +334,7 @@ public class RemoteFileWatcherIT {
         server.setHandler(handler);
         handler.addServletWithMapping(servlet, "/*");
         server.start();
-
+        servers.add(server);
         return server;
     }
 
@@ -141,4 +362,203 @@ public class RemoteFileWatcherIT {
         }
     }
 
+    @SuppressWarnings("serial")
+    public static class ETagResponseServlet extends HttpServlet {
+
+        static final AtomicInteger requests = new AtomicInteger();
+        static final AtomicInteger fullResponses = new AtomicInteger();
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException {
+            requests.incrementAndGet();
+            if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            fullResponses.incrementAndGet();
+            response.setContentType("application/json");
+            response.setHeader("ETag", "\"v1\"");
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.getWriter().println("{\"foo\": {\"bar\": \"baz\"}}");
+        }
+    }
+
+    /**
+     * Pushes two configs with a heartbeat in between, then closes the stream. Polls get the latest config.
+     */
+    @SuppressWarnings("serial")
+    public static class EventStreamServlet extends HttpServlet {
+
+        static final AtomicInteger connections = new AtomicInteger();
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException {
+            if (!"text/event-stream".equals(request.getHeader("Accept"))) {
+                response.setContentType("application/json");
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().println("{\"foo\": {\"bar\": \"qux\"}}");
+                return;
+            }
+            connections.incrementAndGet();
+            response.setContentType("text/event-stream");
+            response.setStatus(HttpServletResponse.SC_OK);
+            PrintWriter out = response.getWriter();
+            out.print("event: config\ndata: {\"foo\":\ndata: {\"bar\": \"baz\"}}\n\n");
+            out.flush();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.print(": heartbeat\n\n");
+            out.print("id: 2\ndata: {\"foo\": {\"bar\": \"qux\"}}\n\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Pushes one document and closes the stream, polls get the same bytes.
+     */
+    @SuppressWarnings("serial")
+    public static class SameDocumentServlet extends HttpServlet {
+
+        static final String DOCUMENT = "{\"foo\": {\"bar\": \"baz\"}}";
+        static volatile CountDownLatch connections;
+        static volatile CountDownLatch polls;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException {
+            response.setStatus(HttpServletResponse.SC_OK);
+            if (!"text/event-stream".equals(request.getHeader("Accept"))) {
+                polls.countDown();
+                response.setContentType("application/json");
+                response.getWriter().print(DOCUMENT);
+                return;
+            }
+            connections.countDown();
+            response.setContentType("text/event-stream");
+            response.getWriter().print("data: " + DOCUMENT + "\n\n");
+        }
+    }
+
+    /**
+     * Reference implementation of the delta protocol. Serves a new revision of the config for each of the first
+     * requests, as a merge patch when the client sends the version of an earlier revision.
+     */
+    @SuppressWarnings("serial")
+    public static class DeltaResponseServlet extends HttpServlet {
+
+        static final String[] REVISIONS = {
+                "{\"foo\": {\"bar\": \"v1\"}, \"other\": {\"baz\": 1}}",
+                "{\"foo\": {\"bar\": \"v2\"}, \"other\": {\"baz\": 1}}",
+                "{\"foo\": {\"bar\": \"v3\"}, \"other\": {\"baz\": 1}}"
+        };
+        static final AtomicInteger requests = new AtomicInteger();
+        static final AtomicInteger patches = new AtomicInteger();
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException {
+            int revision = Math.min(requests.getAndIncrement(), REVISIONS.length - 1);
+            String current = REVISIONS[revision];
+            response.setHeader(RemoteFileWatcher.VERSION_HEADER, md5(current));
+            response.setStatus(HttpServletResponse.SC_OK);
+
+            String clientVersion = request.getHeader(RemoteFileWatcher.VERSION_HEADER);
+            for (int i = 0; i < revision && clientVersion != null; i++) {
+                if (md5(REVISIONS[i]).equalsIgnoreCase(clientVersion)) {
+                    patches.incrementAndGet();
+                    response.setContentType(RemoteFileWatcher.MERGE_PATCH);
+                    response.getWriter().print(new Gson().toJson(mergePatch(parse(REVISIONS[i]), parse(current))));
+                    return;
+                }
+            }
+            response.setContentType("application/json");
+            response.getWriter().print(current);
+        }
+
+        private static Config parse(String json) {
+            return new ConfigParser().parseJson(json);
+        }
+
+        private static Map<String, Object> mergePatch(Config from, Config to) {
+            Map<String, Object> patch = new LinkedHashMap<>();
+            for (String category : from.keySet()) {
+                if (!to.containsKey(category)) {
+                    patch.put(category, null);
+                }
+            }
+            for (Map.Entry<String, Category> category : to.entrySet()) {
+                Category old = from.get(category.getKey());
+                if (old == null) {
+                    patch.put(category.getKey(), category.getValue());
+                    continue;
+                }
+                Map<String, Object> values = new LinkedHashMap<>();
+                for (String key : old.keySet()) {
+                    if (!category.getValue().containsKey(key)) {
+                        values.put(key, null);
+                    }
+                }
+                for (Map.Entry<String, Object> value : category.getValue().entrySet()) {
+                    if (!Objects.equals(old.get(value.getKey()), value.getValue())) {
+                        values.put(value.getKey(), value.getValue());
+                    }
+                }
+                if (!values.isEmpty()) {
+                    patch.put(category.getKey(), values);
+                }
+            }
+            return patch;
+        }
+
+        private static String md5(String json) {
+            try {
+                StringBuilder hex = new StringBuilder();
+                for (byte b : MessageDigest.getInstance("MD5").digest(json.getBytes(StandardCharsets.UTF_8))) {
+                    hex.append(String.format("%02X", b));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Holds every request open until released.
+     */
+    @SuppressWarnings("serial")
+    public static class HangingResponseServlet extends HttpServlet {
+
+        static volatile CountDownLatch entered;
+        static volatile CountDownLatch release;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException {
+            entered.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class GzipResponseServlet extends HttpServlet {
+
+        static volatile String acceptEncoding;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException {
+            acceptEncoding = request.getHeader("Accept-Encoding");
+            response.setContentType("application/json");
+            response.setHeader("Content-Encoding", "gzip");
+            response.setStatus(HttpServletResponse.SC_OK);
+            try (GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream())) {
+                out.write("{\"foo\": {\"bar\": \"baz\"}}".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,45 @@
+package no.mehl.jconfig;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScheduledSourceTest {
+
+    @Test
+    public void start_givenFailingSource_shouldKeepRunningIt() throws InterruptedException {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        CountDownLatch runs = new CountDownLatch(3);
+        new ScheduledSource(scheduler, () -> {
+            runs.countDown();
+            throw new IllegalStateException("failed");
+        }, 10, TimeUnit.MILLISECONDS, 0.5).start();
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void start_givenShutdownScheduler_shouldStopRunning() throws InterruptedException {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        new ScheduledSource(scheduler, () -> {
+            runs.incrementAndGet();
+            started.countDown();
+        }, 10, TimeUnit.MILLISECONDS, 0).start();
+
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+        int stopped = runs.get();
+        Thread.sleep(50);
+        assertEquals(stopped, runs.get());
+    }
+}
@@ -0,0 +1,83 @@
+package no.mehl.jconfig.metrics;
+
+import no.mehl.jconfig.ConfigException;
+import no.mehl.jconfig.ConfigManager;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class JmxConfigMetricsTest {
+
+    @Test
+    public void getters_givenMetrics_shouldCountLookupsMissesAndTypeErrors() {
+        JmxConfigMetrics metrics = new JmxConfigMetrics("getters", 1);
+        ConfigManager configManager = new ConfigManager.ConfigManagerBuilder()
+                .withMetrics(metrics)
+                .withJson("{\"local\": {\"foo\": \"bar\"}}")
+                .build();
+
+        configManager.getString("foo");
+        configManager.getString("foo");
+        try {
+            configManager.getInt("local", "foo");
+            fail("Expected type error");
+        } catch (ConfigException e) {
+            // expected
+        }
+        try {
+            configManager.getString("missing");
+            fail("Expected miss");
+        } catch (ConfigException e) {
+            // expected
+        }
+
+        assertEquals(4, metrics.getLookups());
+        assertEquals(Long.valueOf(3), metrics.getKeyLookups().get("local.foo"));
+        assertEquals(1, metrics.getTypeErrors());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(1, metrics.getParses());
+        assertEquals(1, metrics.getPublishes());
+        assertTrue(metrics.getSnapshotAgeMillis() >= 0);
+    }
+
+    @Test
+    public void lookup_givenMoreKeysThanLimit_shouldCountRestAsUntracked() {
+        JmxConfigMetrics metrics = new JmxConfigMetrics("limit", 1, 2);
+        for (int i = 0; i < 5; i++) {
+            metrics.lookup("local", "key" + i);
+        }
+        metrics.lookup("local", "key0");
+
+        assertEquals(6, metrics.getLookups());
+        assertEquals(2, metrics.getKeyLookups().size());
+        assertEquals(Long.valueOf(2), metrics.getKeyLookups().get("local.key0"));
+        assertEquals(3, metrics.getUntrackedKeyLookups());
+    }
+
+    @Test
+    public void register_givenName_shouldExportMBean() throws Exception {
+        JmxConfigMetrics metrics = new JmxConfigMetrics("export").register();
+        try {
+            metrics.miss("local", "foo");
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(metrics.getObjectName(), "Misses"));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void getPercentile_givenValues_shouldReturnBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(10000);
+
+        assertEquals(127, histogram.getPercentile(50));
+        assertEquals(127, histogram.getPercentile(99));
+        assertEquals(10000, histogram.getPercentile(100));
+        assertEquals(10000, histogram.getMax());
+    }
+}